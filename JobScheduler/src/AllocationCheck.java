@@ -0,0 +1,89 @@
+import java.lang.management.ManagementFactory;
+
+/**
+ * Checks that arena mode inserts and completes jobs without allocating once it has warmed up.
+ *
+ * java AllocationCheck [--commands=N] [--rounds=R]
+ *
+ * For every checked mode a scheduler runs R rounds of N Inserts, each job finishing before the next
+ * one arrives, so every command covers one Insert, its quanta and the job's completion. The commands
+ * are created before a round starts. Allocated bytes of the scheduler thread are taken from the
+ * ThreadMXBean around the last round and must stay below MAX_BYTES_PER_COMMAND per command. The exit
+ * status is 0 if every mode passes and 1 otherwise.
+ */
+public class AllocationCheck {
+
+    /**
+     * Modes that must not allocate per command
+     */
+    private static final String[][] MODES = {
+            {"--arena"},
+            {"--arena", "--lazy-delete"},
+    };
+
+    private static final double MAX_BYTES_PER_COMMAND = 0.5;
+
+    /**
+     * Arrival gap and total time of every job, the gap leaves room for both quanta of a job
+     */
+    private static final int GAP = 12;
+    private static final int TOTAL_TIME = 10;
+
+    public static void main(String[] args) {
+        int commands = 200_000;
+        int rounds = 5;
+        for (String arg : args) {
+            if (arg.startsWith("--commands=")) commands = Integer.parseInt(arg.substring("--commands=".length()));
+            else if (arg.startsWith("--rounds=")) rounds = Integer.parseInt(arg.substring("--rounds=".length()));
+            else throw new IllegalArgumentException("Usage: AllocationCheck [--commands=N] [--rounds=R]");
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            System.out.println("Allocated bytes per thread are not supported by this JVM");
+            System.exit(1);
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        boolean passed = true;
+        for (String[] mode : MODES) {
+            double bytes = measure(threads, mode, commands, rounds);
+            boolean ok = bytes < MAX_BYTES_PER_COMMAND;
+            System.out.printf("%-24s %8.2f bytes per Insert and completion  %s%n", String.join(" ", mode), bytes, ok ? "ok" : "FAILED");
+            passed &= ok;
+        }
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Returns the bytes allocated per command during the last round
+     */
+    private static double measure(com.sun.management.ThreadMXBean threads, String[] mode, int commands, int rounds) {
+        jobscheduler scheduler = new jobscheduler(SchedulerOptions.parse(mode));
+        scheduler.setCommandListener((command, globalTime, output) -> { });
+
+        long threadId = Thread.currentThread().getId();
+        int time = 0, jobId = 0;
+        double bytes = 0;
+
+        for (int round = 0; round < rounds; round++) {
+            Command[] batch = new Command[commands];
+            for (int i = 0; i < commands; i++) {
+                time += GAP;
+                batch[i] = new Command(time, "Insert", ++jobId, TOTAL_TIME);
+            }
+
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (Command command : batch) scheduler.scheduleCommand(command);
+            scheduler.runCommands();
+            long after = threads.getThreadAllocatedBytes(threadId);
+
+            /**
+             * Only the last job may still be running, every other one has completed
+             */
+            if (scheduler.getJobCount() > 1) throw new IllegalStateException("Jobs did not complete in round " + round);
+            bytes = (after - before) / (double) commands;
+        }
+        return bytes;
+    }
+}
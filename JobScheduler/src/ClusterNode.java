@@ -0,0 +1,89 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+
+/**
+ * One member of a SchedulerCluster. It runs its own jobscheduler over the jobs of the partitions it
+ * owns and answers these requests:
+ *
+ * "time: Name(args)"           executes a command, the response is its output line or "OK"
+ * "SIZE"                        number of jobs on the node
+ * "COUNT jobId1 jobId2"         number of the node's jobs in the range
+ * "KEY jobId1 jobId2 rank"      jobID of the rank-th of the node's jobs in the range, counted from 0
+ * "EXPORT time jobId1 jobId2"   removes the jobs in the range at time and returns them
+ * "IMPORT time\n jobs"          adds jobs returned by EXPORT at time, the response is "OK"
+ *
+ * Every request is executed under the node's lock, so a transport may call it from any thread.
+ */
+public class ClusterNode implements Transport.Handler {
+
+    private final jobscheduler scheduler;
+
+    /**
+     * Command being executed and its output
+     */
+    private Command current;
+    private String output;
+
+    public ClusterNode(SchedulerOptions options) {
+        this.scheduler = new jobscheduler(options);
+        scheduler.setCommandListener(this::commandExecuted);
+    }
+
+    @Override
+    public synchronized String handle(String request) {
+        if (!request.isEmpty() && Character.isDigit(request.charAt(0))) {
+            return execute(Command.parse(request));
+        }
+
+        int newline = request.indexOf('\n');
+        String[] fields = ((newline < 0) ? request : request.substring(0, newline)).split(" ");
+        switch (fields[0]) {
+            case "SIZE":
+                return Integer.toString(scheduler.getJobCount());
+
+            case "COUNT":
+                return Integer.toString(scheduler.countJobsInRange(Integer.parseInt(fields[1]), Integer.parseInt(fields[2])));
+
+            case "KEY":
+                return Integer.toString(scheduler.getJobIdInRange(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), Integer.parseInt(fields[3])));
+
+            case "EXPORT": {
+                scheduler.advanceTo(Integer.parseInt(fields[1]));
+                StringBuilder sb = new StringBuilder();
+                scheduler.exportJobs(Integer.parseInt(fields[2]), Integer.parseInt(fields[3]), sb);
+                return sb.toString();
+            }
+
+            case "IMPORT": {
+                scheduler.advanceTo(Integer.parseInt(fields[1]));
+                try {
+                    scheduler.importJobs(new BufferedReader(new StringReader(request.substring(newline + 1))));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return "OK";
+            }
+
+            default:
+                throw new IllegalArgumentException("Unknown request " + fields[0]);
+        }
+    }
+
+    private String execute(Command command) {
+        current = command;
+        output = "OK";
+        scheduler.scheduleCommand(command);
+        scheduler.runCommands();
+        current = null;
+        return output;
+    }
+
+    private void commandExecuted(Command command, int globalTime, CharSequence text) {
+        if (command != current) return;
+        int end = text.length();
+        if (end > 0 && text.charAt(end - 1) == '\n') end--;
+        output = (end == 0) ? "OK" : text.subSequence(0, end).toString();
+    }
+}
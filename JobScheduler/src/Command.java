@@ -0,0 +1,82 @@
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class Command {
+
+    private static final Pattern COMMAND_PATTERN =
+            Pattern.compile("([0-9]+)(:(\\s{1}))(([a-zA-Z]+)(\\((([0-9]+)(,)?([0-9]+)?(,([0-9]+))?)\\)))");
+
+    /**
+     * Smallest and largest number of arguments of every command an input line may hold
+     */
+    private static final Map<String, int[]> ARGUMENT_COUNTS = Map.of(
+            "Insert", new int[] {2, 3},
+            "NextJob", new int[] {1, 1},
+            "PreviousJob", new int[] {1, 1},
+            "PrintJob", new int[] {1, 2},
+            "SumRemaining", new int[] {1, 2},
+            "MaxExecuted", new int[] {1, 2},
+            "Cancel", new int[] {1, 1},
+            "UpdateTotalTime", new int[] {2, 2},
+            "Suspend", new int[] {1, 1},
+            "Resume", new int[] {1, 1});
+
+    private final int arrivalTime;
+    private final String name;
+    private final int[] args;
+
+    public Command(int arrivalTime, String name, int... args) {
+        this.arrivalTime = arrivalTime;
+        this.name = name;
+        this.args = args;
+    }
+
+    /**
+     * Parses a line of the form "arrivalTime: Name(arg1[,arg2[,arg3]])". Throws IllegalArgumentException
+     * for malformed lines, unknown commands and wrong numbers of arguments.
+     */
+    public static Command parse(String line) {
+        Matcher matcher = COMMAND_PATTERN.matcher(line);
+        if (!matcher.find()) throw new IllegalArgumentException("Malformed command: " + line);
+
+        int[] counts = ARGUMENT_COUNTS.get(matcher.group(5));
+        if (counts == null) throw new IllegalArgumentException("Unknown command: " + line);
+
+        int argCount = matcher.group(12) != null ? 3 : (matcher.group(10) != null ? 2 : 1);
+        if (argCount < counts[0] || argCount > counts[1]) throw new IllegalArgumentException("Wrong number of arguments: " + line);
+        int[] args = new int[argCount];
+        args[0] = Integer.parseInt(matcher.group(8));
+        if (argCount > 1) args[1] = Integer.parseInt(matcher.group(10));
+        if (argCount > 2) args[2] = Integer.parseInt(matcher.group(12));
+
+        return new Command(Integer.parseInt(matcher.group(1)), matcher.group(5), args);
+    }
+
+    public int getArrivalTime() {
+        return arrivalTime;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getArgCount() {
+        return args.length;
+    }
+
+    public int getArg(int i) {
+        return args[i];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(arrivalTime).append(": ").append(name).append("(");
+        for (int i = 0; i < args.length; i++) {
+            if (i > 0) sb.append(",");
+            sb.append(args[i]);
+        }
+        return sb.append(")").toString();
+    }
+}
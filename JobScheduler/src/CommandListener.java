@@ -0,0 +1,20 @@
+/**
+ * Receives the output of every command executed by jobscheduler
+ */
+public interface CommandListener {
+
+    /**
+     * Called right after a command has been executed. output holds the lines the command produced,
+     * each terminated by a newline, and is empty for commands without output. The buffer is reused
+     * for the next command.
+     */
+    void commandExecuted(Command command, int globalTime, CharSequence output);
+
+    /**
+     * Called instead of commandExecuted when executing a command threw. The scheduler carries on with
+     * the next command. By default the exception is rethrown to the caller of runCommands.
+     */
+    default void commandFailed(Command command, int globalTime, RuntimeException e) {
+        throw e;
+    }
+}
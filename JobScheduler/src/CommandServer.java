@@ -0,0 +1,494 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Serves jobscheduler commands over TCP on localhost or over a Unix domain socket.
+ *
+ * Clients send the same lines as the input file, one command per line, and may pipeline as many as
+ * they like. Every command gets exactly one response line in request order: the output line of a
+ * query, "OK" for commands without output or "ERR message" for lines that could not be parsed or
+ * commands that failed. A failed command does not affect the other commands of its batch. Lines
+ * longer than MAX_LINE_LENGTH are answered with "ERR line too long" and skipped up to their newline.
+ *
+ * A selector thread does all socket I/O. The commands read during one pass over the selector form a
+ * batch that is handed to the scheduler thread, which owns the jobscheduler instance, executes the
+ * whole batch and encodes the responses into pooled direct buffers. Those buffers are written to the
+ * sockets as they are, with gathering writes. A client that does not read its responses stops being
+ * read from once its responses back up, until they drain.
+ *
+ * With --replicate the server ships its log to standbys after every batch. With --standby it is a
+ * standby itself: it answers NextJob, PreviousJob, PrintJob, SumRemaining and MaxExecuted from the
+ * replicated state and rejects other commands until the primary goes away.
+ */
+public class CommandServer {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_GATHER = 16;
+    private static final int MAX_LINE_LENGTH = 4096;
+
+    /**
+     * High-water marks of a connection, it is not read from while it has more requests in flight or
+     * more response buffers queued
+     */
+    private static final int MAX_IN_FLIGHT = 8192;
+    private static final int MAX_OUTBOUND_BUFFERS = 16;
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final jobscheduler scheduler;
+
+    /**
+     * Replication role of the server, both null for a plain server
+     */
+    private final ReplicationPrimary primary;
+    private final ReplicationStandby standby;
+
+    private final LinkedBlockingQueue<List<Request>> batches = new LinkedBlockingQueue<>();
+    private final ConcurrentLinkedQueue<Batch> completedBatches = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<ByteBuffer> bufferPool = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Requests of the batch being executed, looked up by command when its output arrives
+     */
+    private final IdentityHashMap<Command, Request> executing = new IdentityHashMap<>();
+
+    private final ByteBuffer[] gather = new ByteBuffer[MAX_GATHER];
+    private volatile boolean running = true;
+
+    /**
+     * A single command line together with the connection waiting for its response
+     */
+    private static final class Request {
+        final Connection connection;
+        final Command command;
+        String response;
+
+        Request(Connection connection, Command command, String response) {
+            this.connection = connection;
+            this.command = command;
+            this.response = response;
+        }
+    }
+
+    /**
+     * An executed batch with its encoded responses grouped by connection
+     */
+    private static final class Batch {
+        final List<Request> requests;
+        final Map<Connection, ArrayList<ByteBuffer>> responses;
+
+        Batch(List<Request> requests, Map<Connection, ArrayList<ByteBuffer>> responses) {
+            this.requests = requests;
+            this.responses = responses;
+        }
+    }
+
+    /**
+     * Per client state, only touched by the selector thread
+     */
+    private static final class Connection {
+        final SocketChannel channel;
+        final StringBuilder line = new StringBuilder();
+        boolean discardingLine;
+        final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+        int inFlight;
+        boolean inputClosed;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    private CommandServer(ServerSocketChannel serverChannel, SchedulerOptions options) throws IOException {
+        this.serverChannel = serverChannel;
+        this.standby = (options.getStandbyAddress() != null) ? new ReplicationStandby(options.getStandbyAddress(), options) : null;
+        this.scheduler = (standby != null) ? standby.getScheduler() : new jobscheduler(options);
+        this.primary = (options.getReplicateAddress() != null) ? ReplicationPrimary.open(options.getReplicateAddress(), scheduler) : null;
+        if (primary != null) scheduler.setQuantumListener(primary);
+        this.selector = Selector.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        scheduler.setCommandListener(new CommandListener() {
+            @Override
+            public void commandExecuted(Command command, int globalTime, CharSequence output) {
+                CommandServer.this.commandExecuted(command, globalTime, output);
+            }
+
+            @Override
+            public void commandFailed(Command command, int globalTime, RuntimeException e) {
+                CommandServer.this.commandFailed(command, globalTime, e);
+            }
+        });
+    }
+
+    /**
+     * Opens a server for an address of the form "tcp:port" (localhost only) or "unix:path"
+     */
+    public static CommandServer open(String address, SchedulerOptions options) throws IOException {
+        return new CommandServer(bind(address), options);
+    }
+
+    /**
+     * Opens a blocking server channel for "tcp:port" (localhost only) or "unix:path"
+     */
+    static ServerSocketChannel bind(String address) throws IOException {
+        if (address.startsWith("tcp:")) {
+            int port = Integer.parseInt(address.substring("tcp:".length()));
+            ServerSocketChannel channel = ServerSocketChannel.open();
+            channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            return channel;
+        }
+        if (address.startsWith("unix:")) {
+            Path path = Path.of(address.substring("unix:".length()));
+            Files.deleteIfExists(path);
+            ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.bind(UnixDomainSocketAddress.of(path));
+            return channel;
+        }
+        throw new IllegalArgumentException("Server address must be tcp:port or unix:path");
+    }
+
+    /**
+     * Connects a blocking channel to "tcp:port" on localhost or to "unix:path"
+     */
+    static SocketChannel connect(String address) throws IOException {
+        if (address.startsWith("tcp:")) {
+            int port = Integer.parseInt(address.substring("tcp:".length()));
+            return SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        }
+        if (address.startsWith("unix:")) {
+            return SocketChannel.open(UnixDomainSocketAddress.of(Path.of(address.substring("unix:".length()))));
+        }
+        throw new IllegalArgumentException("Address must be tcp:port or unix:path");
+    }
+
+    public SocketAddress getLocalAddress() throws IOException {
+        return serverChannel.getLocalAddress();
+    }
+
+    /**
+     * Runs the selector loop on the calling thread until close is called
+     */
+    public void serve() throws IOException {
+        Thread schedulerThread = new Thread(this::schedulerLoop, "command-scheduler");
+        schedulerThread.setDaemon(true);
+        schedulerThread.start();
+
+        if (standby != null) {
+            Thread replicationThread = new Thread(standby, "replication-standby");
+            replicationThread.setDaemon(true);
+            replicationThread.start();
+        }
+
+        try {
+            while (running) {
+                selector.select();
+
+                List<Request> batch = new ArrayList<>();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) accept();
+                        if (key.isValid() && key.isReadable()) read(key, batch);
+                        if (key.isValid() && key.isWritable()) write(key);
+                    } catch (IOException e) {
+                        closeConnection(key);
+                    }
+                }
+
+                if (!batch.isEmpty()) batches.add(batch);
+                deliverCompletedBatches();
+            }
+        } finally {
+            schedulerThread.interrupt();
+            for (SelectionKey key : selector.keys()) key.channel().close();
+            selector.close();
+        }
+    }
+
+    /**
+     * Stops the server, can be called from any thread
+     */
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+    }
+
+    /**
+     * Reads whatever the client has sent and adds every complete line to the batch
+     */
+    private void read(SelectionKey key, List<Request> batch) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        ByteBuffer buffer = acquireBuffer();
+        try {
+            int n = 0;
+            while (!isBacklogged(connection) && (n = connection.channel.read(buffer)) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    char c = (char) (buffer.get() & 0xff);
+                    if (c == '\n') {
+                        if (!connection.discardingLine) addRequest(connection, batch);
+                        connection.discardingLine = false;
+                    } else if (c != '\r' && !connection.discardingLine) {
+                        if (connection.line.length() == MAX_LINE_LENGTH) {
+                            rejectLongLine(connection, batch);
+                        } else {
+                            connection.line.append(c);
+                        }
+                    }
+                }
+                buffer.clear();
+            }
+            if (n < 0) {
+                if (connection.line.length() > 0) addRequest(connection, batch);
+                connection.inputClosed = true;
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                closeIfDone(key);
+            } else if (isBacklogged(connection)) {
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
+        } finally {
+            releaseBuffer(buffer);
+        }
+    }
+
+    /**
+     * Answers a line longer than MAX_LINE_LENGTH with ERR and drops the rest of it up to the next newline
+     */
+    private void rejectLongLine(Connection connection, List<Request> batch) {
+        connection.line.setLength(0);
+        connection.discardingLine = true;
+        connection.inFlight++;
+        batch.add(new Request(connection, null, "ERR line too long"));
+    }
+
+    private void addRequest(Connection connection, List<Request> batch) {
+        String line = connection.line.toString();
+        connection.line.setLength(0);
+        if (line.trim().isEmpty()) return;
+
+        connection.inFlight++;
+        try {
+            batch.add(new Request(connection, Command.parse(line), null));
+        } catch (IllegalArgumentException e) {
+            batch.add(new Request(connection, null, error(e)));
+        }
+    }
+
+    /**
+     * Queues the encoded responses of finished batches on their connections
+     */
+    private void deliverCompletedBatches() throws IOException {
+        Batch batch;
+        while ((batch = completedBatches.poll()) != null) {
+            for (Request request : batch.requests) {
+                request.connection.inFlight--;
+            }
+            for (Map.Entry<Connection, ArrayList<ByteBuffer>> entry : batch.responses.entrySet()) {
+                Connection connection = entry.getKey();
+                SelectionKey key = connection.channel.keyFor(selector);
+                if (key == null || !key.isValid()) {
+                    for (ByteBuffer buffer : entry.getValue()) releaseBuffer(buffer);
+                    continue;
+                }
+                connection.outbound.addAll(entry.getValue());
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+            }
+        }
+    }
+
+    /**
+     * Writes queued response buffers straight from direct memory
+     */
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+
+        while (!connection.outbound.isEmpty()) {
+            int count = 0;
+            for (ByteBuffer buffer : connection.outbound) {
+                if (count == MAX_GATHER) break;
+                gather[count++] = buffer;
+            }
+            long written = connection.channel.write(gather, 0, count);
+
+            while (!connection.outbound.isEmpty() && !connection.outbound.peekFirst().hasRemaining()) {
+                releaseBuffer(connection.outbound.pollFirst());
+            }
+            if (written == 0) break;
+        }
+
+        if (!connection.inputClosed && !isBacklogged(connection)) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+        }
+
+        if (connection.outbound.isEmpty()) {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            closeIfDone(key);
+        }
+    }
+
+    private static boolean isBacklogged(Connection connection) {
+        return connection.inFlight >= MAX_IN_FLIGHT || connection.outbound.size() >= MAX_OUTBOUND_BUFFERS;
+    }
+
+    private void closeIfDone(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        if (connection.inputClosed && connection.inFlight == 0 && connection.outbound.isEmpty()) {
+            closeConnection(key);
+        }
+    }
+
+    private void closeConnection(SelectionKey key) {
+        key.cancel();
+        Connection connection = (Connection) key.attachment();
+        try {
+            connection.channel.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Executes one batch at a time. Every command of a batch is scheduled before the scheduler runs,
+     * so commands of the same tick are ordered by arrival time across connections. A command that
+     * throws is answered with ERR by commandFailed, anything else that escapes a batch answers its
+     * unanswered requests with ERR, so the thread keeps serving.
+     */
+    private void schedulerLoop() {
+        try {
+            while (true) {
+                List<Request> batch = batches.take();
+
+                synchronized (scheduler) {
+                    try {
+                        if (standby != null && !standby.isPromoted()) {
+                            answerQueries(batch);
+                        } else {
+                            for (Request request : batch) {
+                                if (request.command == null) continue;
+                                executing.put(request.command, request);
+                                scheduler.scheduleCommand(request.command);
+                            }
+                            scheduler.runCommands();
+                        }
+                    } catch (RuntimeException e) {
+                        for (Request request : batch) {
+                            if (request.response == null) request.response = error(e);
+                        }
+                    } finally {
+                        executing.clear();
+                        if (primary != null) primary.flush();
+                    }
+                }
+
+                completedBatches.add(encodeResponses(batch));
+                selector.wakeup();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Answers the read-only commands of a batch from the replicated state, all at once
+     */
+    private void answerQueries(List<Request> batch) {
+        List<Request> queries = new ArrayList<>();
+        List<Command> commands = new ArrayList<>();
+        for (Request request : batch) {
+            if (request.command == null) continue;
+            queries.add(request);
+            commands.add(request.command);
+        }
+
+        String[] responses = scheduler.executeQueries(commands);
+        for (int i = 0; i < responses.length; i++) {
+            queries.get(i).response = (responses[i] != null) ? responses[i] : "ERR read-only standby";
+        }
+    }
+
+    private void commandExecuted(Command command, int globalTime, CharSequence output) {
+        if (primary != null) primary.commandExecuted(command, globalTime);
+        Request request = executing.get(command);
+        if (request == null) return;
+        int end = output.length();
+        if (end > 0 && output.charAt(end - 1) == '\n') end--;
+        request.response = (end == 0) ? "OK" : output.subSequence(0, end).toString();
+    }
+
+    private void commandFailed(Command command, int globalTime, RuntimeException e) {
+        if (primary != null) primary.commandExecuted(command, globalTime);
+        Request request = executing.get(command);
+        if (request != null) request.response = error(e);
+    }
+
+    private static String error(RuntimeException e) {
+        return "ERR " + ((e.getMessage() != null) ? e.getMessage() : e.getClass().getSimpleName());
+    }
+
+    /**
+     * Encodes the responses of a batch in request order into flipped buffers per connection
+     */
+    private Batch encodeResponses(List<Request> requests) {
+        LinkedHashMap<Connection, ArrayList<ByteBuffer>> responses = new LinkedHashMap<>();
+
+        for (Request request : requests) {
+            ArrayList<ByteBuffer> buffers = responses.computeIfAbsent(request.connection, c -> new ArrayList<>());
+            String response = (request.response != null) ? request.response : "OK";
+            ByteBuffer buffer = buffers.isEmpty() ? null : buffers.get(buffers.size() - 1);
+
+            for (int i = 0; i <= response.length(); i++) {
+                if (buffer == null || !buffer.hasRemaining()) {
+                    buffer = acquireBuffer();
+                    buffers.add(buffer);
+                }
+                buffer.put(i < response.length() ? (byte) response.charAt(i) : (byte) '\n');
+            }
+        }
+
+        for (ArrayList<ByteBuffer> buffers : responses.values()) {
+            for (ByteBuffer buffer : buffers) buffer.flip();
+        }
+        return new Batch(requests, responses);
+    }
+
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = bufferPool.poll();
+        return (buffer != null) ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        bufferPool.add(buffer);
+    }
+
+}
@@ -0,0 +1,701 @@
+import java.util.Arrays;
+
+/**
+ * Compact store of the jobs of a scheduler for dense, mostly sequential jobID spaces, together with
+ * their run queue.
+ *
+ * Like a roaring bitmap, jobIDs are split into their high and low 16 bits. Every high half that is in
+ * use has a container for its low halves. A container keeps its low halves as a sorted char array
+ * while it holds up to ARRAY_MAX jobs and as a 65536 bit bitmap once it grows beyond that. Next to
+ * them, in jobID order, it keeps the totalTime and the slot of every job in primitive arrays.
+ *
+ * A slot holds a job's executedTime and jobID. Slots 1 to queueSize() are the run queue, a binary min
+ * heap on executedTime that makes the same choices as MinHeap, so a scheduler runs its jobs in the same
+ * order either way. The remaining slots belong to jobs that are running, delayed or suspended. A job
+ * costs 16 bytes plus its low half, about 0.1 bytes in a bitmap container and 2 in an array container.
+ *
+ * Appending jobIDs in increasing order is O(1) amortized. Point lookups and inserts are a binary
+ * search over the containers followed by a rank inside one container. Moving a job in the run queue
+ * updates its slot with a point lookup. Range scans walk the jobs in order, range aggregates use per
+ * container totals for containers that are fully in range.
+ */
+public class DenseJobStore {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+    private static final int BLOCK_WORDS = 16;
+    private static final int CONTAINER_MAX = 1 << 16;
+
+    /**
+     * High halves of the jobIDs in use, sorted, with their containers at the same position
+     */
+    private int[] highs = new int[4];
+    private Container[] containers = new Container[4];
+    private int containerCount;
+    private int size;
+
+    /**
+     * executedTime and jobID by slot, slots 1 to size are in use and the first queueSize form the heap
+     */
+    private int[] slotExecuted = new int[8];
+    private int[] slotJob = new int[8];
+    private int queueSize;
+
+    /**
+     * The jobs of one high half
+     */
+    private final class Container {
+
+        /**
+         * Sorted low halves while the container is an array container, null once it is a bitmap
+         */
+        char[] lows = new char[4];
+
+        /**
+         * One bit per low half and the number of set bits in every BLOCK_WORDS words, null for arrays
+         */
+        long[] bits;
+        int[] blockCounts;
+
+        /**
+         * totalTime and slot of every job, the slot is negated while the job is suspended
+         */
+        int[] total = new int[4];
+        int[] slots = new int[4];
+        int size;
+
+        long sumRemaining;
+        long maxExecuted = Long.MIN_VALUE;
+        boolean maxStale;
+
+        /**
+         * Returns the position of low among the container's jobs, or -(insertion point) - 1 if absent
+         */
+        int rank(int low) {
+            if (bits == null) return Arrays.binarySearch(lows, 0, size, (char) low);
+
+            int word = low >>> 6;
+            int block = word / BLOCK_WORDS;
+            int rank = 0;
+            for (int b = 0; b < block; b++) rank += blockCounts[b];
+            for (int w = block * BLOCK_WORDS; w < word; w++) rank += Long.bitCount(bits[w]);
+            rank += Long.bitCount(bits[word] & ((1L << low) - 1));
+
+            return ((bits[word] & (1L << low)) != 0) ? rank : -rank - 1;
+        }
+
+        /**
+         * Returns the position of the first job with a low half of at least low
+         */
+        int lowerBound(int low) {
+            if (low > 0xFFFF) return size;
+            int rank = rank(low);
+            return (rank >= 0) ? rank : -rank - 1;
+        }
+
+        /**
+         * Returns the low half of the job at position
+         */
+        int lowAt(int position) {
+            if (bits == null) return lows[position];
+
+            int block = 0;
+            while (position >= blockCounts[block]) position -= blockCounts[block++];
+            int word = block * BLOCK_WORDS;
+            while (position >= Long.bitCount(bits[word])) position -= Long.bitCount(bits[word++]);
+
+            long w = bits[word];
+            for (int i = 0; i < position; i++) w &= w - 1;
+            return (word << 6) | Long.numberOfTrailingZeros(w);
+        }
+
+        /**
+         * Returns the low half of the job following the one at position with low half low
+         */
+        int nextLow(int position, int low) {
+            if (bits == null) return lows[position + 1];
+
+            int word = (low + 1) >>> 6;
+            long w = bits[word] & (-1L << (low + 1));
+            while (w == 0) w = bits[++word];
+            return (word << 6) | Long.numberOfTrailingZeros(w);
+        }
+
+        long executedAt(int position) {
+            return slotExecuted[Math.abs(slots[position])];
+        }
+
+        void insert(int position, int low, int slot, int totalTime) {
+            if (size == total.length) {
+                int capacity = Math.min(size + (size >> 2) + 4, CONTAINER_MAX);
+                total = Arrays.copyOf(total, capacity);
+                slots = Arrays.copyOf(slots, capacity);
+                if (bits == null) lows = Arrays.copyOf(lows, capacity);
+            }
+
+            System.arraycopy(total, position, total, position + 1, size - position);
+            System.arraycopy(slots, position, slots, position + 1, size - position);
+            total[position] = totalTime;
+            slots[position] = slot;
+
+            if (bits == null) {
+                System.arraycopy(lows, position, lows, position + 1, size - position);
+                lows[position] = (char) low;
+            } else {
+                bits[low >>> 6] |= 1L << low;
+                blockCounts[(low >>> 6) / BLOCK_WORDS]++;
+            }
+            size++;
+
+            long executedTime = slotExecuted[slot];
+            sumRemaining += remaining(executedTime, totalTime);
+            maxExecuted = Math.max(maxExecuted, executedTime);
+            if (bits == null && size > ARRAY_MAX) toBitmap();
+        }
+
+        void remove(int position, int low) {
+            sumRemaining -= remaining(executedAt(position), total[position]);
+            if (executedAt(position) == maxExecuted) maxStale = true;
+
+            System.arraycopy(total, position + 1, total, position, size - position - 1);
+            System.arraycopy(slots, position + 1, slots, position, size - position - 1);
+
+            if (bits == null) {
+                System.arraycopy(lows, position + 1, lows, position, size - position - 1);
+            } else {
+                bits[low >>> 6] &= ~(1L << low);
+                blockCounts[(low >>> 6) / BLOCK_WORDS]--;
+            }
+            size--;
+
+            if (bits != null && size <= ARRAY_MAX / 2) toArray();
+            if (size < total.length / 2) trim();
+        }
+
+        void update(int position, long executedTime, int totalTime) {
+            sumRemaining += remaining(executedTime, totalTime) - remaining(executedAt(position), total[position]);
+            if (executedTime >= maxExecuted) {
+                maxExecuted = executedTime;
+            } else if (executedAt(position) == maxExecuted) {
+                maxStale = true;
+            }
+            slotExecuted[Math.abs(slots[position])] = (int) executedTime;
+            total[position] = totalTime;
+        }
+
+        long maxExecuted() {
+            if (maxStale) {
+                maxExecuted = Long.MIN_VALUE;
+                for (int i = 0; i < size; i++) maxExecuted = Math.max(maxExecuted, executedAt(i));
+                maxStale = false;
+            }
+            return maxExecuted;
+        }
+
+        private void toBitmap() {
+            bits = new long[BITMAP_WORDS];
+            blockCounts = new int[BITMAP_WORDS / BLOCK_WORDS];
+            for (int i = 0; i < size; i++) {
+                bits[lows[i] >>> 6] |= 1L << lows[i];
+                blockCounts[(lows[i] >>> 6) / BLOCK_WORDS]++;
+            }
+            lows = null;
+        }
+
+        private void toArray() {
+            lows = new char[total.length];
+            int n = 0;
+            for (int word = 0; word < BITMAP_WORDS; word++) {
+                for (long w = bits[word]; w != 0; w &= w - 1) {
+                    lows[n++] = (char) ((word << 6) | Long.numberOfTrailingZeros(w));
+                }
+            }
+            bits = null;
+            blockCounts = null;
+        }
+
+        private void trim() {
+            int capacity = Math.min(Math.max(size + (size >> 2), 4), CONTAINER_MAX);
+            total = Arrays.copyOf(total, capacity);
+            slots = Arrays.copyOf(slots, capacity);
+            if (bits == null) lows = Arrays.copyOf(lows, capacity);
+        }
+    }
+
+    /**
+     * returns the number of jobs in the store
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * returns true if store is empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int jobId) {
+        Container c = container(jobId);
+        return c != null && c.rank(jobId & 0xFFFF) >= 0;
+    }
+
+    /**
+     * Adds a job that is neither queued nor suspended, returns false without changing the store if
+     * jobId is already present. executedTime must not exceed totalTime.
+     */
+    public boolean insert(int jobId, long executedTime, int totalTime) {
+        int high = jobId >>> 16;
+        int at = Arrays.binarySearch(highs, 0, containerCount, high);
+        if (at < 0) {
+            at = -at - 1;
+            addContainer(at, high);
+        }
+
+        Container c = containers[at];
+        int rank = c.rank(jobId & 0xFFFF);
+        if (rank >= 0) return false;
+
+        int slot = ++size;
+        if (slot == slotJob.length) {
+            slotExecuted = Arrays.copyOf(slotExecuted, slot + (slot >> 2));
+            slotJob = Arrays.copyOf(slotJob, slot + (slot >> 2));
+        }
+        slotExecuted[slot] = (int) executedTime;
+        slotJob[slot] = jobId;
+
+        c.insert(-rank - 1, jobId & 0xFFFF, slot, totalTime);
+        return true;
+    }
+
+    /**
+     * Removes a job, from the run queue as well, returns false if jobId is not present
+     */
+    public boolean remove(int jobId) {
+        int at = Arrays.binarySearch(highs, 0, containerCount, jobId >>> 16);
+        if (at < 0) return false;
+
+        Container c = containers[at];
+        int rank = c.rank(jobId & 0xFFFF);
+        if (rank < 0) return false;
+
+        if (Math.abs(c.slots[rank]) <= queueSize) removeFromQueue(Math.abs(c.slots[rank]));
+        int slot = Math.abs(c.slots[rank]);
+
+        c.remove(rank, jobId & 0xFFFF);
+        if (c.size == 0) removeContainer(at);
+
+        /**
+         * The job was not queued anymore, so the last slot is outside the heap as well and can fill the gap
+         */
+        if (slot != size) moveSlot(size, slot);
+        size--;
+        if (size < slotJob.length / 2 && slotJob.length > 8) {
+            slotExecuted = Arrays.copyOf(slotExecuted, size + (size >> 2) + 2);
+            slotJob = Arrays.copyOf(slotJob, size + (size >> 2) + 2);
+        }
+        return true;
+    }
+
+    /**
+     * Replaces the times of a job, returns false if jobId is not present. The executedTime of a
+     * queued job must not change.
+     */
+    public boolean update(int jobId, long executedTime, int totalTime) {
+        Container c = container(jobId);
+        int rank = (c != null) ? c.rank(jobId & 0xFFFF) : -1;
+        if (rank < 0) return false;
+
+        if (Math.abs(c.slots[rank]) <= queueSize && executedTime != c.executedAt(rank)) {
+            throw new IllegalStateException("Job " + jobId + " is queued");
+        }
+        c.update(rank, executedTime, totalTime);
+        return true;
+    }
+
+    /**
+     * returns the executedTime of a job that is present
+     */
+    public long getExecutedTime(int jobId) {
+        return slotExecuted[Math.abs(slotOf(jobId))];
+    }
+
+    /**
+     * returns the totalTime of a job that is present
+     */
+    public int getTotalTime(int jobId) {
+        Container c = container(jobId);
+        return c.total[c.rank(jobId & 0xFFFF)];
+    }
+
+    /**
+     * returns true if a job that is present is suspended
+     */
+    public boolean isSuspended(int jobId) {
+        return slotOf(jobId) < 0;
+    }
+
+    /**
+     * Marks a job that is present and not queued as suspended or not
+     */
+    public void setSuspended(int jobId, boolean suspended) {
+        int slot = Math.abs(slotOf(jobId));
+        setSlot(jobId, suspended ? -slot : slot);
+    }
+
+    /**
+     * returns the number of jobs in the run queue
+     */
+    public int queueSize() {
+        return queueSize;
+    }
+
+    /**
+     * returns true if a job that is present waits in the run queue
+     */
+    public boolean isQueued(int jobId) {
+        int slot = slotOf(jobId);
+        return slot > 0 && slot <= queueSize;
+    }
+
+    /**
+     * Adds a job that is present, not queued and not suspended to the run queue
+     */
+    public void enqueue(int jobId) {
+        int slot = slotOf(jobId);
+        if (slot != queueSize + 1) swapSlots(slot, queueSize + 1);
+        queueSize++;
+        siftUp(queueSize);
+    }
+
+    /**
+     * Appends a job that is present, not queued and not suspended to the run queue without restoring
+     * the heap order, for rebuilding a run queue from its entries in order
+     */
+    public void appendToQueue(int jobId) {
+        int slot = slotOf(jobId);
+        if (slot != queueSize + 1) swapSlots(slot, queueSize + 1);
+        queueSize++;
+    }
+
+    /**
+     * returns the jobID at index of the run queue, from 1 to queueSize() in heap order
+     */
+    public int getQueuedJobId(int index) {
+        return slotJob[index];
+    }
+
+    /**
+     * Removes the job with the least executedTime from the run queue and returns its jobID
+     */
+    public int dequeue() {
+        if (queueSize == 0) throw new IllegalStateException("Run queue is empty");
+        int jobId = slotJob[1];
+        removeFromQueue(1);
+        return jobId;
+    }
+
+    /**
+     * Removes a job from the run queue, returns false if it is not present or not queued
+     */
+    public boolean dequeue(int jobId) {
+        Container c = container(jobId);
+        int rank = (c != null) ? c.rank(jobId & 0xFFFF) : -1;
+        if (rank < 0 || c.slots[rank] < 1 || c.slots[rank] > queueSize) return false;
+
+        removeFromQueue(c.slots[rank]);
+        return true;
+    }
+
+    /**
+     * Appends the job with the lowest jobID greater than jobId like NextJob, returns false if there is none
+     */
+    public boolean appendNextJob(int jobId, StringBuilder out) {
+        if (jobId == Integer.MAX_VALUE) return false;
+        int target = jobId + 1;
+
+        for (int at = firstContainer(target >>> 16); at < containerCount; at++) {
+            Container c = containers[at];
+            int position = (highs[at] == target >>> 16) ? c.lowerBound(target & 0xFFFF) : 0;
+            if (position < c.size) {
+                appendJob((highs[at] << 16) | c.lowAt(position), c, position, out);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appends the job with the greatest jobID less than jobId like PreviousJob, returns false if there is none
+     */
+    public boolean appendPreviousJob(int jobId, StringBuilder out) {
+        if (jobId <= 0) return false;
+        int target = jobId - 1;
+
+        for (int at = firstContainer((target >>> 16) + 1) - 1; at >= 0; at--) {
+            Container c = containers[at];
+            int position;
+            if (highs[at] == target >>> 16) {
+                int rank = c.rank(target & 0xFFFF);
+                position = (rank >= 0) ? rank : -rank - 2;
+            } else {
+                position = c.size - 1;
+            }
+            if (position >= 0) {
+                appendJob((highs[at] << 16) | c.lowAt(position), c, position, out);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appends the jobs with jobIDs between jobId1 and jobId2 like PrintJob and returns how many there were
+     */
+    public int appendJobsInRange(int jobId1, int jobId2, StringBuilder out) {
+        int count = 0;
+        for (int at = firstContainer(jobId1 >>> 16); at < containerCount && highs[at] <= jobId2 >>> 16; at++) {
+            Container c = containers[at];
+            int from = (highs[at] == jobId1 >>> 16) ? c.lowerBound(jobId1 & 0xFFFF) : 0;
+            int to = (highs[at] == jobId2 >>> 16) ? c.lowerBound((jobId2 & 0xFFFF) + 1) : c.size;
+
+            int low = (from < to) ? c.lowAt(from) : 0;
+            for (int position = from; position < to; position++) {
+                if (position > from) low = c.nextLow(position - 1, low);
+                if (count++ > 0) out.append(",");
+                appendJob((highs[at] << 16) | low, c, position, out);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * returns the number of jobs with jobIDs between jobId1 and jobId2
+     */
+    public int countInRange(int jobId1, int jobId2) {
+        int count = 0;
+        for (int at = firstContainer(jobId1 >>> 16); at < containerCount && highs[at] <= jobId2 >>> 16; at++) {
+            Container c = containers[at];
+            int from = (highs[at] == jobId1 >>> 16) ? c.lowerBound(jobId1 & 0xFFFF) : 0;
+            int to = (highs[at] == jobId2 >>> 16) ? c.lowerBound((jobId2 & 0xFFFF) + 1) : c.size;
+            count += Math.max(to - from, 0);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the jobID of the rank-th job, counted from 0, among the jobs with a jobID of at least
+     * jobId1. Skips whole containers by their sizes.
+     */
+    public int getJobIdAtRank(int jobId1, int rank) {
+        for (int at = firstContainer(jobId1 >>> 16); at < containerCount; at++) {
+            Container c = containers[at];
+            int from = (highs[at] == jobId1 >>> 16) ? c.lowerBound(jobId1 & 0xFFFF) : 0;
+            if (rank < c.size - from) return (highs[at] << 16) | c.lowAt(from + rank);
+            rank -= c.size - from;
+        }
+        throw new IllegalArgumentException("Not enough jobs from " + jobId1);
+    }
+
+    /**
+     * returns the jobIDs between jobId1 and jobId2 in increasing order
+     */
+    public int[] getJobIdsInRange(int jobId1, int jobId2) {
+        int[] ids = new int[16];
+        int count = 0;
+        for (int at = firstContainer(jobId1 >>> 16); at < containerCount && highs[at] <= jobId2 >>> 16; at++) {
+            Container c = containers[at];
+            int from = (highs[at] == jobId1 >>> 16) ? c.lowerBound(jobId1 & 0xFFFF) : 0;
+            int to = (highs[at] == jobId2 >>> 16) ? c.lowerBound((jobId2 & 0xFFFF) + 1) : c.size;
+
+            int low = (from < to) ? c.lowAt(from) : 0;
+            for (int position = from; position < to; position++) {
+                if (position > from) low = c.nextLow(position - 1, low);
+                if (count == ids.length) ids = Arrays.copyOf(ids, count * 2);
+                ids[count++] = (highs[at] << 16) | low;
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * returns the total remaining time of the jobs with jobIDs between jobId1 and jobId2
+     */
+    public long getSumRemainingInRange(int jobId1, int jobId2) {
+        long sum = 0;
+        for (int at = firstContainer(jobId1 >>> 16); at < containerCount && highs[at] <= jobId2 >>> 16; at++) {
+            Container c = containers[at];
+            int from = (highs[at] == jobId1 >>> 16) ? c.lowerBound(jobId1 & 0xFFFF) : 0;
+            int to = (highs[at] == jobId2 >>> 16) ? c.lowerBound((jobId2 & 0xFFFF) + 1) : c.size;
+
+            if (from == 0 && to == c.size) {
+                sum += c.sumRemaining;
+            } else {
+                for (int i = from; i < to; i++) sum += remaining(c.executedAt(i), c.total[i]);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * returns the highest executedTime of the jobs with jobIDs between jobId1 and jobId2, Long.MIN_VALUE if there are none
+     */
+    public long getMaxExecutedInRange(int jobId1, int jobId2) {
+        long max = Long.MIN_VALUE;
+        for (int at = firstContainer(jobId1 >>> 16); at < containerCount && highs[at] <= jobId2 >>> 16; at++) {
+            Container c = containers[at];
+            int from = (highs[at] == jobId1 >>> 16) ? c.lowerBound(jobId1 & 0xFFFF) : 0;
+            int to = (highs[at] == jobId2 >>> 16) ? c.lowerBound((jobId2 & 0xFFFF) + 1) : c.size;
+
+            if (from == 0 && to == c.size) {
+                max = Math.max(max, c.maxExecuted());
+            } else {
+                for (int i = from; i < to; i++) max = Math.max(max, c.executedAt(i));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns an estimate of the bytes held by the store's arrays
+     */
+    public long memoryBytes() {
+        long bytes = 8L * highs.length + 8L * slotJob.length;
+        for (int at = 0; at < containerCount; at++) {
+            Container c = containers[at];
+            bytes += 48 + 8L * c.total.length;
+            bytes += (c.bits == null) ? 2L * c.lows.length : 8L * BITMAP_WORDS + 4L * c.blockCounts.length;
+        }
+        return bytes;
+    }
+
+    /**
+     * Takes the job at index out of the heap like MinHeap.removeJob, it ends up in the first slot after the heap
+     */
+    private void removeFromQueue(int index) {
+        int last = queueSize--;
+        if (index != last) {
+            swapSlots(index, last);
+            index = siftUp(index);
+            minHeapify(index);
+        }
+    }
+
+    /**
+     * Moves the job at index up while it has less executedTime than its parent, returns its final index
+     */
+    private int siftUp(int index) {
+        int executedTime = slotExecuted[index];
+        int jobId = slotJob[index];
+        int start = index;
+
+        while (index != 1 && executedTime < slotExecuted[index / 2]) {
+            moveSlot(index / 2, index);
+            index /= 2;
+        }
+        if (index != start) placeSlot(index, executedTime, jobId);
+        return index;
+    }
+
+    /**
+     * Moves the job at index down with the same choices as MinHeap.minHeapify: it trades places with
+     * the left child if that has less executedTime, otherwise with the right one if that has.
+     */
+    private void minHeapify(int index) {
+        int executedTime = slotExecuted[index];
+        int jobId = slotJob[index];
+        int start = index;
+
+        while (index <= (queueSize + 1) / 2) {
+            int left = 2 * index;
+            int right = left + 1;
+            int child;
+            if (left <= queueSize && executedTime > slotExecuted[left]) {
+                child = left;
+            } else if (right <= queueSize && executedTime > slotExecuted[right]) {
+                child = right;
+            } else {
+                break;
+            }
+            moveSlot(child, index);
+            index = child;
+        }
+        if (index != start) placeSlot(index, executedTime, jobId);
+    }
+
+    private void swapSlots(int a, int b) {
+        int executedTime = slotExecuted[a];
+        int jobId = slotJob[a];
+        moveSlot(b, a);
+        placeSlot(b, executedTime, jobId);
+    }
+
+    /**
+     * Copies the job in slot from to slot to and points its container at the new slot
+     */
+    private void moveSlot(int from, int to) {
+        placeSlot(to, slotExecuted[from], slotJob[from]);
+    }
+
+    private void placeSlot(int slot, int executedTime, int jobId) {
+        slotExecuted[slot] = executedTime;
+        slotJob[slot] = jobId;
+
+        Container c = container(jobId);
+        int rank = c.rank(jobId & 0xFFFF);
+        c.slots[rank] = (c.slots[rank] < 0) ? -slot : slot;
+    }
+
+    /**
+     * returns the slot of a job that is present, negated while it is suspended
+     */
+    private int slotOf(int jobId) {
+        Container c = container(jobId);
+        return c.slots[c.rank(jobId & 0xFFFF)];
+    }
+
+    private void setSlot(int jobId, int slot) {
+        Container c = container(jobId);
+        c.slots[c.rank(jobId & 0xFFFF)] = slot;
+    }
+
+    private Container container(int jobId) {
+        int at = Arrays.binarySearch(highs, 0, containerCount, jobId >>> 16);
+        return (at >= 0) ? containers[at] : null;
+    }
+
+    /**
+     * Returns the position of the first container whose high half is at least high
+     */
+    private int firstContainer(int high) {
+        int at = Arrays.binarySearch(highs, 0, containerCount, high);
+        return (at >= 0) ? at : -at - 1;
+    }
+
+    private void addContainer(int at, int high) {
+        if (containerCount == highs.length) {
+            highs = Arrays.copyOf(highs, containerCount * 2);
+            containers = Arrays.copyOf(containers, containerCount * 2);
+        }
+        System.arraycopy(highs, at, highs, at + 1, containerCount - at);
+        System.arraycopy(containers, at, containers, at + 1, containerCount - at);
+        highs[at] = high;
+        containers[at] = new Container();
+        containerCount++;
+    }
+
+    private void removeContainer(int at) {
+        System.arraycopy(highs, at + 1, highs, at, containerCount - at - 1);
+        System.arraycopy(containers, at + 1, containers, at, containerCount - at - 1);
+        containers[--containerCount] = null;
+    }
+
+    private static void appendJob(int jobId, Container c, int position, StringBuilder out) {
+        out.append("(").append(jobId).append(", ").append(c.executedAt(position)).append(", ").append(c.total[position]).append(")");
+    }
+
+    private static long remaining(long executedTime, int totalTime) {
+        return Math.max(0, totalTime - executedTime);
+    }
+}
@@ -0,0 +1,4 @@
+public enum DuplicatePolicy {
+    REJECT,
+    OVERWRITE
+}
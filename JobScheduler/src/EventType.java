@@ -0,0 +1,5 @@
+public enum EventType {
+    COMMAND_ARRIVAL,
+    QUANTUM_EXPIRED,
+    JOB_RELEASE
+}
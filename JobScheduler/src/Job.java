@@ -1,20 +1,49 @@
 public class Job {
-    private final int globalTime;
+    private int globalTime;
 
     protected int jobID;
-    protected int executedTime;
-    protected final int totalTime;
+    protected long executedTime;
+    protected int totalTime;
 
+    /**
+     * Position in the MinHeap, 0 while the job is not queued
+     */
+    protected int heapIndex;
+
+    /**
+     * Suspended jobs stay in the tree but are parked off the run queue
+     */
+    protected boolean suspended;
+    protected boolean cancelled;
+
+    /**
+     * Set while an Insert with a start delay waits for its release
+     */
+    protected boolean delayed;
+    protected int releaseTime;
+
+    /**
+     * Link in the JobArena free list
+     */
+    Job nextFree;
+
+
+    /**
+     * returns the time the job was inserted
+     */
+    public int getGlobalTime() {
+        return globalTime;
+    }
 
     public int getJobID() {
         return jobID;
     }
 
-    public int getExecutedTime() {
+    public long getExecutedTime() {
         return executedTime;
     }
 
-    public void incrementExecutedTime(int executedTime) {
+    public void incrementExecutedTime(long executedTime) {
         this.executedTime += executedTime;
     }
 
@@ -22,13 +51,69 @@ public class Job {
         return totalTime;
     }
 
+    public void setTotalTime(int totalTime) {
+        this.totalTime = totalTime;
+    }
+
+    public boolean isFinished() {
+        return executedTime >= totalTime;
+    }
+
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    public void setSuspended(boolean suspended) {
+        this.suspended = suspended;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void setCancelled(boolean cancelled) {
+        this.cancelled = cancelled;
+    }
+
+    public boolean isDelayed() {
+        return delayed;
+    }
+
+    public void setDelayed(boolean delayed) {
+        this.delayed = delayed;
+    }
+
+    /**
+     * returns the time a delayed job joins the run queue
+     */
+    public int getReleaseTime() {
+        return releaseTime;
+    }
+
+    public void setReleaseTime(int releaseTime) {
+        this.releaseTime = releaseTime;
+    }
+
 
     public Job (int globalTime, int jobID, int totalTime) {
+        reset(globalTime, jobID, totalTime);
+    }
+
+    /**
+     * Reinitializes a recycled job
+     */
+    void reset(int globalTime, int jobID, int totalTime) {
         this.globalTime = globalTime;
         this.jobID = jobID;
         this.totalTime = totalTime;
 
         this.executedTime = 0;
+        this.heapIndex = 0;
+        this.suspended = false;
+        this.cancelled = false;
+        this.delayed = false;
+        this.releaseTime = 0;
+        this.nextFree = null;
     }
 
     @Override
@@ -0,0 +1,100 @@
+/**
+ * Slab allocator for Jobs and RedBlackNodes.
+ *
+ * Objects are created a slab at a time and recycled through intrusive free lists, so once the arena
+ * has grown to the peak number of live jobs, inserting and retiring jobs allocates nothing.
+ */
+public class JobArena {
+
+    private final int slabSize;
+
+    private Job freeJobs;
+    private RedBlackNode freeNodes;
+
+    private int jobCapacity;
+    private int nodeCapacity;
+    private int slabs;
+
+    public JobArena(int slabSize) {
+        if (slabSize < 1) throw new IllegalArgumentException("Slab size must be positive");
+        this.slabSize = slabSize;
+        addJobSlab();
+        addNodeSlab();
+    }
+
+    /**
+     * Returns a job from the free list, adding a slab if it is empty
+     */
+    public Job allocateJob(int globalTime, int jobID, int totalTime) {
+        if (freeJobs == null) addJobSlab();
+
+        Job job = freeJobs;
+        freeJobs = job.nextFree;
+        job.reset(globalTime, jobID, totalTime);
+        return job;
+    }
+
+    /**
+     * Puts a job back on the free list, it must no longer be referenced by the tree, heap or wheel
+     */
+    public void releaseJob(Job job) {
+        job.nextFree = freeJobs;
+        freeJobs = job;
+    }
+
+    /**
+     * Returns a node holding job from the free list, adding a slab if it is empty
+     */
+    public RedBlackNode allocateNode(Job job) {
+        if (freeNodes == null) addNodeSlab();
+
+        RedBlackNode node = freeNodes;
+        freeNodes = node.parent;
+        node.reset(job);
+        return node;
+    }
+
+    /**
+     * Puts a node unlinked from the tree back on the free list, chained through its parent pointer
+     */
+    public void releaseNode(RedBlackNode node) {
+        node.reset(null);
+        node.parent = freeNodes;
+        freeNodes = node;
+    }
+
+    /**
+     * returns the number of jobs and nodes the arena has created
+     */
+    public int getJobCapacity() {
+        return jobCapacity;
+    }
+
+    public int getNodeCapacity() {
+        return nodeCapacity;
+    }
+
+    public int getSlabCount() {
+        return slabs;
+    }
+
+    private void addJobSlab() {
+        for (int i = 0; i < slabSize; i++) {
+            Job job = new Job(0, 0, 0);
+            job.nextFree = freeJobs;
+            freeJobs = job;
+        }
+        jobCapacity += slabSize;
+        slabs++;
+    }
+
+    private void addNodeSlab() {
+        for (int i = 0; i < slabSize; i++) {
+            RedBlackNode node = new RedBlackNode();
+            node.parent = freeNodes;
+            freeNodes = node;
+        }
+        nodeCapacity += slabSize;
+        slabs++;
+    }
+}
@@ -0,0 +1,138 @@
+import java.util.Arrays;
+
+/**
+ * Open addressing hash index from jobID to the tree node or job stored under it.
+ *
+ * Keys are kept in a primitive int array next to the value array, so lookups do not box. Collisions are
+ * resolved by linear probing and removals shift the rest of the probe run back, so no tombstones are
+ * needed. An empty slot has a null value.
+ */
+public class JobIndex<T> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] keys;
+    private Object[] nodes;
+    private int mask;
+    private int size;
+
+    public JobIndex() {
+        keys = new int[MIN_CAPACITY];
+        nodes = new Object[MIN_CAPACITY];
+        mask = MIN_CAPACITY - 1;
+    }
+
+    /**
+     * returns the number of jobIDs in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the value stored under jobId, null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int jobId) {
+        int slot = hash(jobId) & mask;
+        while (nodes[slot] != null) {
+            if (keys[slot] == jobId) return (T) nodes[slot];
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Maps jobId to node, replacing any previous mapping
+     */
+    public void put(int jobId, T node) {
+        int slot = hash(jobId) & mask;
+        while (nodes[slot] != null) {
+            if (keys[slot] == jobId) {
+                nodes[slot] = node;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = jobId;
+        nodes[slot] = node;
+        size++;
+
+        /**
+         * Keep the load factor at or below one half
+         */
+        if (size * 2 > nodes.length) resize(nodes.length * 2);
+    }
+
+    /**
+     * Removes jobId from the index and returns the value it was mapped to
+     */
+    @SuppressWarnings("unchecked")
+    public T remove(int jobId) {
+        int slot = hash(jobId) & mask;
+        while (nodes[slot] != null) {
+            if (keys[slot] == jobId) {
+                T node = (T) nodes[slot];
+                shiftBack(slot);
+                size--;
+                return node;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Removes all mappings
+     */
+    public void clear() {
+        Arrays.fill(nodes, null);
+        size = 0;
+    }
+
+    /**
+     * Empties slot and moves later entries of the same probe run into the gap
+     */
+    private void shiftBack(int slot) {
+        int gap = slot;
+        int next = (gap + 1) & mask;
+
+        while (nodes[next] != null) {
+            int home = hash(keys[next]) & mask;
+
+            /**
+             * The entry can fill the gap if its home slot is not between the gap and its position
+             */
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                nodes[gap] = nodes[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        nodes[gap] = null;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldNodes = nodes;
+
+        keys = new int[capacity];
+        nodes = new Object[capacity];
+        mask = capacity - 1;
+
+        for (int i = 0; i < oldNodes.length; i++) {
+            if (oldNodes[i] == null) continue;
+            int slot = hash(oldKeys[i]) & mask;
+            while (nodes[slot] != null) slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            nodes[slot] = oldNodes[i];
+        }
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,74 @@
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A job carrying a real workload. executedTime is measured in nanoseconds of carrier thread time
+ * and totalTime is unused since a live job runs until its workload completes.
+ */
+public class LiveJob extends Job implements Runnable {
+
+    private final Workload workload;
+    private final LiveScheduler owner;
+    private final CountDownLatch completion = new CountDownLatch(1);
+
+    /**
+     * Outcome of the last slice, written by the carrier thread and read by the scheduler thread
+     */
+    long lastSliceNanos;
+    boolean finished;
+    private volatile Throwable failure;
+
+    LiveJob(LiveScheduler owner, int jobID, Workload workload) {
+        super(0, jobID, 0);
+        this.owner = owner;
+        this.workload = workload;
+    }
+
+    /**
+     * Runs one slice on a carrier thread and hands the job back to the scheduler
+     */
+    @Override
+    public void run() {
+        long start = System.nanoTime();
+        try {
+            finished = workload.runSlice(start + owner.getSliceNanos());
+        } catch (Throwable t) {
+            failure = t;
+            finished = true;
+        }
+        lastSliceNanos = System.nanoTime() - start;
+        owner.sliceFinished(this);
+    }
+
+    /**
+     * Completes the job without running it, called by the scheduler thread
+     */
+    void fail(Throwable failure) {
+        this.failure = failure;
+        completion.countDown();
+    }
+
+    /**
+     * Marks the job as completed, called by the scheduler thread
+     */
+    void complete() {
+        completion.countDown();
+    }
+
+    public boolean isDone() {
+        return completion.getCount() == 0;
+    }
+
+    /**
+     * Blocks until the workload has completed or failed
+     */
+    public void awaitCompletion() throws InterruptedException {
+        completion.await();
+    }
+
+    /**
+     * Returns the exception thrown by the workload, null if it completed normally
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+}
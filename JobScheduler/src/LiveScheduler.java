@@ -0,0 +1,208 @@
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Executes real workloads under the least-executed-first policy of jobscheduler.
+ *
+ * A single scheduler thread owns the MinHeap and the RedBlackTree. It hands one slice at a time to a
+ * bounded pool of carrier threads, so the number of live jobs is limited by memory rather than by
+ * threads. Submissions and queries from other threads are queued to the scheduler thread.
+ */
+public class LiveScheduler {
+
+    private final MinHeap jobQueue = new MinHeap();
+    private final RedBlackTree jobTree = new RedBlackTree();
+
+    private final ExecutorService carriers;
+    private final int carrierCount;
+    private final long sliceNanos;
+
+    private final ConcurrentLinkedQueue<Runnable> requests = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<LiveJob> finishedSlices = new ConcurrentLinkedQueue<>();
+    private final Thread schedulerThread;
+    private volatile boolean running = true;
+
+    /**
+     * Number of slices currently on carrier threads, only touched by the scheduler thread
+     */
+    private int inFlight;
+
+    public LiveScheduler(int carrierCount, long sliceNanos) {
+        if (carrierCount < 1) throw new IllegalArgumentException("At least one carrier thread needed");
+        if (sliceNanos < 1) throw new IllegalArgumentException("Slice must be positive");
+
+        this.carrierCount = carrierCount;
+        this.sliceNanos = sliceNanos;
+        this.carriers = Executors.newFixedThreadPool(carrierCount, r -> {
+            Thread t = new Thread(r, "live-carrier");
+            t.setDaemon(true);
+            return t;
+        });
+        this.schedulerThread = new Thread(this::schedulerLoop, "live-scheduler");
+        this.schedulerThread.setDaemon(true);
+        this.schedulerThread.start();
+    }
+
+    public long getSliceNanos() {
+        return sliceNanos;
+    }
+
+    /**
+     * Queues a workload for execution and returns its job. Throws IllegalStateException after shutdown.
+     */
+    public LiveJob submit(int jobID, Workload workload) {
+        if (!running) throw new IllegalStateException("LiveScheduler is shut down");
+        LiveJob job = new LiveJob(this, jobID, workload);
+        request(() -> {
+            if (jobTree.insertJob(job)) {
+                jobQueue.insertJob(job);
+            } else {
+                job.fail(new IllegalArgumentException("Duplicate jobID " + jobID));
+            }
+        });
+        return job;
+    }
+
+    /**
+     * Returns the job with the lowest jobID greater than jobId, formatted like NextJob
+     */
+    public String nextJob(int jobId) {
+        return call(() -> format(jobTree.getNextJob(jobId)));
+    }
+
+    /**
+     * Returns the job with the greatest jobID less than jobId, formatted like PreviousJob
+     */
+    public String previousJob(int jobId) {
+        return call(() -> format(jobTree.getPreviousJob(jobId)));
+    }
+
+    /**
+     * Returns the jobs with jobIDs between jobId1 and jobId2, formatted like PrintJob
+     */
+    public String printJobs(int jobId1, int jobId2) {
+        return call(() -> {
+            List<RedBlackNode> res = jobTree.getJobsInRange(jobId1, jobId2);
+            if (res.isEmpty()) return "(0,0,0)";
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < res.size(); i++) {
+                if (i > 0) sb.append(",");
+                sb.append(res.get(i).getJob().toString());
+            }
+            return sb.toString();
+        });
+    }
+
+    /**
+     * Stops dispatching slices. Requests queued before the shutdown are still executed, then every
+     * job that has not completed fails with a CancellationException. Slices already on carrier
+     * threads run to their next yield point but are not charged anymore.
+     */
+    public void shutdown() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(schedulerThread);
+        schedulerThread.join();
+        carriers.shutdown();
+    }
+
+    /**
+     * Called by a carrier thread when a slice returns
+     */
+    void sliceFinished(LiveJob job) {
+        finishedSlices.add(job);
+        LockSupport.unpark(schedulerThread);
+    }
+
+    /**
+     * Queues a request for the scheduler thread. A request that is still queued once the scheduler
+     * has shut down is taken back and rejected, otherwise the scheduler executes it before stopping.
+     */
+    private void request(Runnable request) {
+        requests.add(request);
+        LockSupport.unpark(schedulerThread);
+        if (!running && requests.remove(request)) throw new IllegalStateException("LiveScheduler is shut down");
+    }
+
+    /**
+     * Runs a query on the scheduler thread and waits for its result
+     */
+    private <T> T call(Callable<T> query) {
+        if (!running) throw new IllegalStateException("LiveScheduler is shut down");
+        FutureTask<T> task = new FutureTask<>(query);
+        request(task);
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the scheduler", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void schedulerLoop() {
+        while (running) {
+            boolean progress = false;
+
+            Runnable request;
+            while ((request = requests.poll()) != null) {
+                request.run();
+                progress = true;
+            }
+
+            LiveJob job;
+            while ((job = finishedSlices.poll()) != null) {
+                completeSlice(job);
+                progress = true;
+            }
+
+            /**
+             * Keep every carrier busy with the least executed jobs
+             */
+            while (inFlight < carrierCount && !jobQueue.isEmpty()) {
+                inFlight++;
+                carriers.execute((LiveJob) jobQueue.removeJob());
+                progress = true;
+            }
+
+            if (!progress) LockSupport.park(this);
+        }
+
+        Runnable request;
+        while ((request = requests.poll()) != null) {
+            request.run();
+        }
+
+        CancellationException cancelled = new CancellationException("LiveScheduler was shut down");
+        for (RedBlackNode node : jobTree.getJobsInRange(0, Integer.MAX_VALUE)) {
+            ((LiveJob) node.getJob()).fail(cancelled);
+        }
+    }
+
+    /**
+     * Charges the job for the measured slice and either retires it or puts it back in the queue
+     */
+    private void completeSlice(LiveJob job) {
+        inFlight--;
+        job.incrementExecutedTime(job.lastSliceNanos);
+
+        if (job.finished) {
+            jobTree.removeJob(job.getJobID());
+            job.complete();
+        } else {
+            jobTree.jobUpdated(job);
+            jobQueue.insertJob(job);
+        }
+    }
+
+    private static String format(RedBlackNode node) {
+        return (node != null && node.getJob() != null) ? node.getJob().toString() : "(0,0,0)";
+    }
+}
@@ -0,0 +1,31 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transport to nodes living in the same JVM. Requests are handed to the node's handler directly,
+ * which makes a cluster testable without any networking.
+ */
+public class LoopbackTransport implements Transport {
+
+    private final List<Transport.Handler> nodes = new ArrayList<>();
+
+    /**
+     * Adds a node and returns its number
+     */
+    public int addNode(Transport.Handler node) {
+        nodes.add(node);
+        return nodes.size() - 1;
+    }
+
+    @Override
+    public String call(int node, String request) throws IOException {
+        if (node < 0 || node >= nodes.size()) throw new IOException("No node " + node);
+        return nodes.get(node).handle(request);
+    }
+
+    @Override
+    public int getNodeCount() {
+        return nodes.size();
+    }
+}
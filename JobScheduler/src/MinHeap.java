@@ -2,7 +2,7 @@ import java.util.ArrayList;
 
 public class MinHeap {
 
-    private static ArrayList<Job> jobs;
+    private final ArrayList<Job> jobs;
     private static final int HEAD = 1;
 
     public MinHeap() {
@@ -30,11 +30,24 @@ public class MinHeap {
     public void insertJob(Job job) {
         jobs.add(job);
         int index = getSize();
+        job.heapIndex = index;
 
-        while ((index != 1) && (jobs.get(index).getExecutedTime() < jobs.get(getParent(index)).getExecutedTime())){
-            swapElements(index, getParent(index));
-            index = getParent(index);
-        }
+        siftUp(index);
+    }
+
+    /**
+     * Appends a job without restoring the heap order, for rebuilding a heap from its entries in order
+     */
+    public void appendJob(Job job) {
+        jobs.add(job);
+        job.heapIndex = getSize();
+    }
+
+    /**
+     * returns the job at index, from HEAD to getSize() in heap order
+     */
+    public Job getJob(int index) {
+        return jobs.get(index);
     }
 
     /**
@@ -45,14 +58,44 @@ public class MinHeap {
 
         if (jobs.size() > 1) {
             leastExecutedTimeJob = jobs.get(HEAD);
-            jobs.set(HEAD, jobs.get(getSize()));
-            jobs.remove(getSize());
-            minHeapify(HEAD);
+            Job last = jobs.remove(getSize());
+            if (getSize() >= HEAD) {
+                jobs.set(HEAD, last);
+                last.heapIndex = HEAD;
+                minHeapify(HEAD);
+            }
+            leastExecutedTimeJob.heapIndex = 0;
         }
         return leastExecutedTimeJob;
 
     }
 
+    /**
+     * removes the given job from the heap using its position index, returns false if it is not in the heap
+     */
+    public boolean removeJob(Job job) {
+        int index = job.heapIndex;
+        if (index < HEAD || index > getSize() || jobs.get(index) != job) return false;
+
+        Job last = jobs.remove(getSize());
+        if (index <= getSize()) {
+            jobs.set(index, last);
+            last.heapIndex = index;
+            index = siftUp(index);
+            minHeapify(index);
+        }
+        job.heapIndex = 0;
+        return true;
+    }
+
+    /**
+     * returns true if the job is waiting in the heap
+     */
+    public boolean contains(Job job) {
+        int index = job.heapIndex;
+        return index >= HEAD && index <= getSize() && jobs.get(index) == job;
+    }
+
     /**
      * returns leftchild of the node
      */
@@ -81,6 +124,19 @@ public class MinHeap {
         Job temp = jobs.get(a);
         jobs.set(a, jobs.get(b));
         jobs.set(b, temp);
+        jobs.get(a).heapIndex = a;
+        temp.heapIndex = b;
+    }
+
+    /**
+     * Moves the element at index up until its parent is not larger, returns its final index
+     */
+    private int siftUp(int index) {
+        while ((index != 1) && (jobs.get(index).getExecutedTime() < jobs.get(getParent(index)).getExecutedTime())){
+            swapElements(index, getParent(index));
+            index = getParent(index);
+        }
+        return index;
     }
 
     /**
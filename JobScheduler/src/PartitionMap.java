@@ -0,0 +1,139 @@
+import java.util.Arrays;
+
+/**
+ * Assigns every jobID to the node that owns it. The jobID space is cut into contiguous partitions,
+ * each owned by one node. Partition i covers the jobIDs from starts[i] up to starts[i + 1] - 1, the
+ * last one up to Integer.MAX_VALUE.
+ */
+public class PartitionMap {
+
+    private int[] starts;
+    private int[] owners;
+    private int count;
+
+    /**
+     * Splits the jobIDs 0 to keySpace - 1 evenly over the nodes, the last node also owns every jobID above
+     */
+    public PartitionMap(int nodes, int keySpace) {
+        if (nodes < 1) throw new IllegalArgumentException("At least one node needed");
+        starts = new int[nodes];
+        owners = new int[nodes];
+        count = nodes;
+        for (int i = 0; i < nodes; i++) {
+            starts[i] = (int) ((long) keySpace * i / nodes);
+            owners[i] = i;
+        }
+    }
+
+    /**
+     * returns the number of partitions
+     */
+    public int size() {
+        return count;
+    }
+
+    public int getStart(int partition) {
+        return starts[partition];
+    }
+
+    public int getEnd(int partition) {
+        return (partition + 1 < count) ? starts[partition + 1] - 1 : Integer.MAX_VALUE;
+    }
+
+    public int getOwner(int partition) {
+        return owners[partition];
+    }
+
+    /**
+     * Returns the partition holding jobId
+     */
+    public int partitionOf(int jobId) {
+        int at = Arrays.binarySearch(starts, 0, count, jobId);
+        return (at >= 0) ? at : -at - 2;
+    }
+
+    public int ownerOf(int jobId) {
+        return owners[partitionOf(jobId)];
+    }
+
+    /**
+     * Returns the nodes owning part of the jobIDs between jobId1 and jobId2, each once, in increasing order
+     */
+    public int[] ownersOf(int jobId1, int jobId2) {
+        if (jobId1 > jobId2) return new int[0];
+
+        boolean[] seen = new boolean[maxOwner() + 1];
+        int n = 0;
+        for (int p = partitionOf(jobId1); p < count && starts[p] <= jobId2; p++) {
+            if (!seen[owners[p]]) {
+                seen[owners[p]] = true;
+                n++;
+            }
+        }
+
+        int[] result = new int[n];
+        for (int node = 0, i = 0; node < seen.length; node++) {
+            if (seen[node]) result[i++] = node;
+        }
+        return result;
+    }
+
+    /**
+     * Gives the jobIDs between jobId1 and jobId2 to node, splitting partitions at the bounds and
+     * merging neighbours with the same owner
+     */
+    public void assign(int jobId1, int jobId2, int node) {
+        split(jobId1);
+        if (jobId2 < Integer.MAX_VALUE) split(jobId2 + 1);
+
+        for (int p = partitionOf(jobId1); p < count && starts[p] <= jobId2; p++) {
+            owners[p] = node;
+        }
+        merge();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int p = 0; p < count; p++) {
+            if (p > 0) sb.append(", ");
+            sb.append("[").append(getStart(p)).append("..").append(getEnd(p)).append("] -> ").append(owners[p]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Makes jobId the first jobID of a partition
+     */
+    private void split(int jobId) {
+        int p = partitionOf(jobId);
+        if (starts[p] == jobId) return;
+
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            owners = Arrays.copyOf(owners, count * 2);
+        }
+        System.arraycopy(starts, p + 1, starts, p + 2, count - p - 1);
+        System.arraycopy(owners, p + 1, owners, p + 2, count - p - 1);
+        starts[p + 1] = jobId;
+        owners[p + 1] = owners[p];
+        count++;
+    }
+
+    private void merge() {
+        int n = 1;
+        for (int p = 1; p < count; p++) {
+            if (owners[p] == owners[n - 1]) continue;
+            starts[n] = starts[p];
+            owners[n] = owners[p];
+            n++;
+        }
+        count = n;
+    }
+
+    private int maxOwner() {
+        int max = 0;
+        for (int p = 0; p < count; p++) max = Math.max(max, owners[p]);
+        return max;
+    }
+}
@@ -0,0 +1,132 @@
+/**
+ * Chooses the length of every quantum from the depth of the run queue and the command arrival rate.
+ *
+ * The default slice is BASE time units, kept within [min, max]. When commands arrive further apart
+ * than a slice and the queue is deep, the slice is widened by BASE for every doubling of the queue
+ * beyond DEEP_QUEUE jobs, but never beyond the mean gap between arrivals, so a new command waits
+ * about as long as it would have with the base slice. When commands arrive faster than one per
+ * slice the slice narrows to the mean gap so they are answered sooner. With min == max the slice is
+ * fixed, which is the default.
+ *
+ * Every decision is counted in a histogram of slice lengths and as widened, narrowed or base.
+ */
+public class QuantumController {
+
+    public static final int BASE = 5;
+
+    private static final int DEEP_QUEUE = 64;
+
+    /**
+     * Weight of the newest gap in the moving average of gaps between arrivals, as a power of two
+     */
+    private static final int GAP_SHIFT = 3;
+
+    private final int min;
+    private final int max;
+
+    /**
+     * Mean gap between command arrivals in 1/256 time units, valid once two commands have arrived
+     */
+    private long meanGapFixed;
+    private long lastArrival;
+    private long arrivals;
+
+    private long decisions, widened, narrowed, unchanged;
+    private final long[] histogram;
+    private int lastQuantum;
+
+    public QuantumController(int min, int max) {
+        if (min < 1 || max < min) throw new IllegalArgumentException("Quantum bounds must satisfy 1 <= min <= max");
+        this.min = min;
+        this.max = max;
+        this.histogram = new long[max + 1];
+    }
+
+    public boolean isAdaptive() {
+        return min < max;
+    }
+
+    /**
+     * Records a command arrival
+     */
+    public void commandArrived(long time) {
+        if (arrivals > 0) {
+            long gap = Math.max(0, time - lastArrival) << 8;
+            meanGapFixed = (arrivals == 1) ? gap : meanGapFixed + ((gap - meanGapFixed) >> GAP_SHIFT);
+        }
+        arrivals++;
+        lastArrival = Math.max(lastArrival, time);
+    }
+
+    /**
+     * Returns the length of the next quantum for a job with the given remaining time
+     */
+    public int nextQuantum(long remaining, int queueDepth) {
+        int quantum = clamp(BASE);
+
+        if (isAdaptive() && arrivals > 1) {
+            int meanGap = (int) Math.min(Integer.MAX_VALUE, meanGapFixed >> 8);
+
+            if (meanGap < BASE) {
+                quantum = clamp(meanGap);
+            } else if (queueDepth > DEEP_QUEUE) {
+                int doublings = 31 - Integer.numberOfLeadingZeros(queueDepth / DEEP_QUEUE);
+                quantum = clamp((int) Math.min(meanGap, (long) BASE * (1 + doublings)));
+            }
+        }
+
+        decisions++;
+        if (quantum > BASE) widened++;
+        else if (quantum < BASE) narrowed++;
+        else unchanged++;
+        histogram[quantum]++;
+        lastQuantum = quantum;
+
+        return (int) Math.min(quantum, remaining);
+    }
+
+    public long getDecisions() {
+        return decisions;
+    }
+
+    public long getWidened() {
+        return widened;
+    }
+
+    public long getNarrowed() {
+        return narrowed;
+    }
+
+    /**
+     * returns how many quanta of the given length were chosen, before capping at a job's remaining time
+     */
+    public long getDecisions(int quantum) {
+        return (quantum >= 0 && quantum < histogram.length) ? histogram[quantum] : 0;
+    }
+
+    public int getLastQuantum() {
+        return lastQuantum;
+    }
+
+    /**
+     * returns the current mean gap between command arrivals
+     */
+    public double getMeanArrivalGap() {
+        return meanGapFixed / 256.0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("Quantum: ").append(decisions).append(" decisions, ")
+                .append(widened).append(" widened, ").append(narrowed).append(" narrowed, ")
+                .append(unchanged).append(" base, mean arrival gap ").append(String.format("%.2f", getMeanArrivalGap()));
+        for (int q = min; q <= max; q++) {
+            if (histogram[q] > 0) sb.append("\n  ").append(q).append(": ").append(histogram[q]);
+        }
+        return sb.toString();
+    }
+
+    private int clamp(int quantum) {
+        return Math.max(min, Math.min(max, quantum));
+    }
+}
@@ -0,0 +1,10 @@
+/**
+ * Receives every quantum jobscheduler starts
+ */
+public interface QuantumListener {
+
+    /**
+     * Called when the job jobId starts running for slice time units at globalTime
+     */
+    void quantumStarted(int jobId, int globalTime, int slice);
+}
@@ -3,10 +3,23 @@ public class RedBlackNode {
     private Color color;
     private Job job;
 
+    /**
+     * jobID of the job, kept on the node so a tombstone keeps its place after its job is gone
+     */
+    private int key;
+    boolean deleted;
+
     RedBlackNode left, right, parent;
     int nodesToLeft = 0;
     int nodesToRight = 0;
 
+    /**
+     * Aggregates over the subtree rooted at this node, the sentinel keeps the identities
+     */
+    long sumRemaining = 0;
+    long minExecuted = Long.MAX_VALUE;
+    long maxExecuted = Long.MIN_VALUE;
+
     public RedBlackNode() {
         this.color = Color.BLACK;
         this.nodesToLeft = 0;
@@ -16,9 +29,26 @@ public class RedBlackNode {
         this.right = null;
     }
 
+    /**
+     * Reinitializes a recycled node
+     */
+    void reset(Job job) {
+        this.color = Color.BLACK;
+        setJob(job);
+        this.deleted = false;
+        this.nodesToLeft = 0;
+        this.nodesToRight = 0;
+        this.sumRemaining = 0;
+        this.minExecuted = Long.MAX_VALUE;
+        this.maxExecuted = Long.MIN_VALUE;
+        this.parent = null;
+        this.left = null;
+        this.right = null;
+    }
+
     public RedBlackNode(Job job) {
        this();
-       this.job = job;
+       setJob(job);
 
     }
 
@@ -29,6 +59,18 @@ public class RedBlackNode {
 
     public void setJob(Job job) {
         this.job = job;
+        if (job != null) this.key = job.getJobID();
+    }
+
+    public int getKey() {
+        return key;
+    }
+
+    /**
+     * returns true if the node is a tombstone left behind by a lazy delete
+     */
+    public boolean isDeleted() {
+        return deleted;
     }
 
     public Color getColor() {
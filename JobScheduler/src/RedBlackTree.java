@@ -1,57 +1,113 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class RedBlackTree {
 
+    /**
+     * Kinds of range aggregates
+     */
+    private static final int SUM = 0;
+    private static final int MIN = 1;
+    private static final int MAX = 2;
+
+    /**
+     * Successor steps a batch probe takes from the previous answer before it searches from the root
+     */
+    private static final int MAX_CURSOR_STEPS = 16;
+
+    /**
+     * Nodes a running sweep visits per insert or remove
+     */
+    private static final int SWEEP_STEPS = 8;
+
     private RedBlackNode sentinel = new RedBlackNode();
     private RedBlackNode root = sentinel;
 
-    public RedBlackTree() {
-        root.setLeft(sentinel);
-        root.setRight(sentinel);
-        root.setParent(sentinel);
-    }
+    /**
+     * jobID to node index kept in sync with the tree for O(1) point lookups
+     */
+    private final JobIndex<RedBlackNode> index = new JobIndex<>();
 
     /**
-     * Binary search to locate a node for a given jobID. Iteratively check in left or right subtrees based on jobId
+     * Source of recycled nodes, null when nodes are allocated on the heap
      */
-    public RedBlackNode search(int key) {
+    private final JobArena arena;
 
-        if (root == sentinel) return null;
+    /**
+     * Share of tombstones among all nodes that starts a sweep, 0 when jobs are removed eagerly
+     */
+    private final double compactionRatio;
+    private int tombstones;
 
-        RedBlackNode currentNode = root;
+    /**
+     * Set while a sweep walks the tree in jobID order purging tombstones, sweepCursor is the jobID
+     * it visited last
+     */
+    private boolean sweeping;
+    private long sweepCursor;
 
-        while (!isSentinel(currentNode)) {
+    public RedBlackTree() {
+        this(null, 0);
+    }
 
-            if (key < currentNode.getJob().getJobID()) {
-                currentNode = currentNode.getLeft();
-            } else if (key > currentNode.getJob().getJobID()) {
-                currentNode = currentNode.getRight();
-            } else if (key == currentNode.getJob().getJobID()) {
-                return currentNode;
-            }
-        }
+    public RedBlackTree(JobArena arena) {
+        this(arena, 0);
+    }
 
-        return null;
+    public RedBlackTree(JobArena arena, double compactionRatio) {
+        this.arena = arena;
+        this.compactionRatio = compactionRatio;
+        root.setLeft(sentinel);
+        root.setRight(sentinel);
+        root.setParent(sentinel);
     }
 
+    /**
+     * Locates the node for a given jobID through the hash index
+     */
+    public RedBlackNode search(int key) {
+        return index.get(key);
+    }
 
     /**
      * Inserts the node in RedBlack Tree similar to insertion in a Binary Search Tree.
      * Fix any violations that could occur after insertion and balance the tree.
+     * Returns false and leaves the tree unchanged if the jobID is already present.
      *
      */
-    public void insertJob(Job job) {
+    public boolean insertJob(Job job) {
 
-        RedBlackNode node = new RedBlackNode(job);
+        if (index.get(job.getJobID()) != null) return false;
+        if (sweeping) sweep();
+
+        RedBlackNode node = (arena != null) ? arena.allocateNode(job) : new RedBlackNode(job);
+        index.put(job.getJobID(), node);
         RedBlackNode x = root;
         RedBlackNode y = sentinel;
 
+        long remaining = getRemaining(job);
+
         //search down the tree to locate parent of the node to be inserted
         while(!isSentinel(x)) {
             y = x;
 
-            if (job.getJobID() < x.getJob().getJobID()) {
+            x.sumRemaining += remaining;
+            x.minExecuted = Math.min(x.minExecuted, job.getExecutedTime());
+            x.maxExecuted = Math.max(x.maxExecuted, job.getExecutedTime());
+
+            /**
+             * A tombstone with the same jobID is brought back to life instead of adding a node
+             */
+            if (x.isDeleted() && job.getJobID() == x.getKey()) {
+                if (arena != null) arena.releaseNode(node);
+                revive(x, job);
+                return true;
+            }
+
+            if (job.getJobID() < x.getKey()) {
                 x.nodesToLeft++;
                 x = x.getLeft();
             } else {
@@ -64,7 +120,7 @@ public class RedBlackTree {
 
         if (isSentinel(y)) {
             root = node;
-        } else if (job.getJobID() < y.getJob().getJobID()){
+        } else if (job.getJobID() < y.getKey()){
             y.setLeft(node);
         } else {
             y.setRight(node);
@@ -78,12 +134,42 @@ public class RedBlackTree {
         node.setLeft(sentinel);
         node.setRight(sentinel);
         node.setColor(Color.RED);
+        updateAggregates(node);
 
 
         balanceTreeAfterInsert(node);
 
 
-        return;
+        return true;
+    }
+
+    private void revive(RedBlackNode node, Job job) {
+        node.deleted = false;
+        node.setJob(job);
+        updateAggregates(node);
+        index.put(job.getJobID(), node);
+        tombstones--;
+    }
+
+    /**
+     * Replaces the job stored under the same jobID and returns the previous one, null if there was none
+     */
+    public Job replaceJob(Job job) {
+        RedBlackNode node = index.get(job.getJobID());
+        if (node == null) return null;
+
+        Job previous = node.getJob();
+        node.setJob(job);
+        updateAggregatesToRoot(node);
+        return previous;
+    }
+
+    /**
+     * Refreshes the subtree aggregates after the executedTime or totalTime of a job changed
+     */
+    public void jobUpdated(Job job) {
+        RedBlackNode node = index.get(job.getJobID());
+        if (node != null) updateAggregatesToRoot(node);
     }
 
     /**
@@ -220,33 +306,15 @@ public class RedBlackTree {
      */
     private void setUpRotateRight(RedBlackNode node) {
 
-        if (isSentinel(node.getRight()) && isSentinel(node.getLeft().getRight())){
-            node.nodesToRight = 0;
-            node.nodesToLeft = 0;
-            node.getLeft().nodesToRight = 1;
-        }
-
-        else if (isSentinel(node.getRight()) && !isSentinel(node.getLeft().getRight())){
-            node.nodesToRight = 0;
-            node.nodesToLeft = 1 + node.getLeft().getRight().nodesToRight +
-                    node.getLeft().getRight().nodesToLeft;
-            node.getLeft().nodesToRight = 2 + node.getLeft().getRight().nodesToRight +
-                    node.getLeft().getRight().nodesToLeft;
-        }
+        updateAggregates(node, node.getLeft().getRight(), node.getRight());
+        updateAggregates(node.getLeft(), node.getLeft().getLeft(), node);
 
-        else if (!isSentinel(node.getRight()) && isSentinel(node.getLeft().getRight())){
-            node.nodesToLeft = 0;
-            node.getLeft().nodesToRight = 2 + node.getRight().nodesToRight +node.getRight().nodesToLeft;
-
-        }
-
-        else{
-            node.nodesToLeft = 1 + node.getLeft().getRight().nodesToRight +
-                    node.getLeft().getRight().nodesToLeft;
-            node.getLeft().nodesToRight = 3 + node.getRight().nodesToRight +
-                    node.getRight().nodesToLeft +
-                    node.getLeft().getRight().nodesToRight + node.getLeft().getRight().nodesToLeft;
-        }
+        /**
+         * node keeps its right subtree and adopts the right subtree of its left child,
+         * which then has node's new subtree on its right. Tombstones do not count.
+         */
+        node.nodesToLeft = subtreeSize(node.getLeft().getRight());
+        node.getLeft().nodesToRight = subtreeSize(node);
 
     }
 
@@ -295,33 +363,15 @@ public class RedBlackTree {
      */
     private void setUpRotateLeft(RedBlackNode node) {
 
-        if (isSentinel(node.getLeft()) && isSentinel(node.getRight().getLeft())){
-            node.nodesToLeft = 0;
-            node.nodesToRight = 0;
-            node.getRight().nodesToLeft = 1;
-        }
-
-
-        else if (isSentinel(node.getLeft()) && !isSentinel(node.getRight().getLeft())){
-            node.nodesToLeft = 0;
-            node.nodesToRight = 1 + node.getRight().getLeft().nodesToLeft +
-                    node.getRight().getLeft().nodesToRight;
-            node.getRight().nodesToLeft = 2 + node.getRight().getLeft().nodesToLeft +
-                    node.getRight().getLeft().nodesToRight;
-        }
-
-        else if (!isSentinel(node.getLeft()) && isSentinel(node.getRight().getLeft())){
-            node.nodesToRight = 0;
-            node.getRight().nodesToLeft = 2 + node.getLeft().nodesToLeft + node.getLeft().nodesToRight;
-
-        }
+        updateAggregates(node, node.getLeft(), node.getRight().getLeft());
+        updateAggregates(node.getRight(), node, node.getRight().getRight());
 
-        else{
-            node.nodesToRight = 1 + node.getRight().getLeft().nodesToLeft +
-                    node.getRight().getLeft().nodesToRight;
-            node.getRight().nodesToLeft = 3 + node.getLeft().nodesToLeft + node.getLeft().nodesToRight +
-                    node.getRight().getLeft().nodesToLeft + node.getRight().getLeft().nodesToRight;
-        }
+        /**
+         * node keeps its left subtree and adopts the left subtree of its right child,
+         * which then has node's new subtree on its left. Tombstones do not count.
+         */
+        node.nodesToRight = subtreeSize(node.getRight().getLeft());
+        node.getRight().nodesToLeft = subtreeSize(node);
 
     }
 
@@ -342,7 +392,13 @@ public class RedBlackTree {
      */
     public void removeJob(int jobId) {
 
-        RedBlackNode node = search(jobId);
+        RedBlackNode node = index.remove(jobId);
+        if (node == null) return;
+
+        if (compactionRatio > 0) {
+            markDeleted(node);
+            return;
+        }
 
         RedBlackNode x = sentinel;
         RedBlackNode y = sentinel;
@@ -374,13 +430,153 @@ public class RedBlackTree {
             y.getParent().setRight(x);
         }
 
-        if (y != node) node.getJob().jobID = y.getJob().jobID;
+        /**
+         * The successor's node is unlinked instead, so its job moves into the node being removed
+         */
+        if (y != node) {
+            node.setJob(y.getJob());
+            index.put(y.getKey(), node);
+        }
 
         updateNodeData(x,y);
 
         if (y.getColor() == Color.BLACK) {
             balanceAfterRemove(x);
         }
+
+        if (arena != null) arena.releaseNode(y);
+    }
+
+    /**
+     * Turns node into a tombstone. Its ancestors stop counting it, no rotation is needed.
+     * Starts a sweep once the tombstones reach the compaction ratio.
+     */
+    private void markDeleted(RedBlackNode node) {
+        node.deleted = true;
+        node.setJob(null);
+        updateAggregates(node);
+
+        RedBlackNode child = node;
+        RedBlackNode current = node.getParent();
+        while (!isSentinel(current)) {
+            if (child == current.getLeft()) {
+                current.nodesToLeft--;
+            } else {
+                current.nodesToRight--;
+            }
+            updateAggregates(current);
+
+            child = current;
+            current = current.getParent();
+        }
+
+        tombstones++;
+        if (!sweeping && tombstones >= compactionRatio * (size() + tombstones)) {
+            sweeping = true;
+            sweepCursor = Integer.MIN_VALUE - 1L;
+        }
+        if (sweeping) sweep();
+    }
+
+    /**
+     * returns the number of tombstones not purged yet
+     */
+    public int getTombstoneCount() {
+        return tombstones;
+    }
+
+    /**
+     * Visits the next SWEEP_STEPS nodes after the sweep cursor and purges the tombstones among them.
+     * A sweep ends after the largest jobID or once no tombstone is left, so removals stay O(log n)
+     * and every tombstone is purged within about size / SWEEP_STEPS operations.
+     */
+    private void sweep() {
+        for (int step = 0; step < SWEEP_STEPS; step++) {
+            RedBlackNode node = (tombstones > 0) ? getFirstNodeAfter(sweepCursor) : null;
+            if (node == null) {
+                sweeping = false;
+                return;
+            }
+            sweepCursor = node.getKey();
+            if (node.isDeleted()) purge(node);
+        }
+    }
+
+    /**
+     * Returns the node, live or tombstone, with the smallest jobID greater than key
+     */
+    private RedBlackNode getFirstNodeAfter(long key) {
+        RedBlackNode first = null;
+        RedBlackNode r = root;
+        while (!isSentinel(r)) {
+            if (r.getKey() > key) {
+                first = r;
+                r = r.getLeft();
+            } else {
+                r = r.getRight();
+            }
+        }
+        return first;
+    }
+
+    /**
+     * Unlinks a tombstone and rebalances. A child or the tombstone's successor node takes its place,
+     * the successor moves as a whole so every live job keeps its node.
+     */
+    private void purge(RedBlackNode node) {
+        RedBlackNode x;
+        Color removedColor = node.getColor();
+
+        if (isSentinel(node.getLeft())) {
+            x = node.getRight();
+            transplant(node, x);
+        } else if (isSentinel(node.getRight())) {
+            x = node.getLeft();
+            transplant(node, x);
+        } else {
+            RedBlackNode y = getSmallestInTree(node.getRight());
+            removedColor = y.getColor();
+            x = y.getRight();
+            if (y.getParent() == node) {
+                x.setParent(y);
+            } else {
+                transplant(y, x);
+                y.setRight(node.getRight());
+                y.getRight().setParent(y);
+            }
+            transplant(node, y);
+            y.setLeft(node.getLeft());
+            y.getLeft().setParent(y);
+            y.setColor(node.getColor());
+        }
+
+        /**
+         * Every subtree that changed lies on the path from x to the root
+         */
+        for (RedBlackNode current = x.getParent(); !isSentinel(current); current = current.getParent()) {
+            current.nodesToLeft = subtreeSize(current.getLeft());
+            current.nodesToRight = subtreeSize(current.getRight());
+            updateAggregates(current);
+        }
+
+        if (removedColor == Color.BLACK) balanceAfterRemove(x);
+
+        tombstones--;
+        if (arena != null) arena.releaseNode(node);
+    }
+
+    /**
+     * Puts v in the place of u under u's parent
+     */
+    private void transplant(RedBlackNode u, RedBlackNode v) {
+        if (isSentinel(u.getParent())) {
+            root = v;
+        } else if (u == u.getParent().getLeft()) {
+            u.getParent().setLeft(v);
+        } else {
+            u.getParent().setRight(v);
+        }
+        v.setParent(u.getParent());
     }
 
     /**
@@ -512,12 +708,12 @@ public class RedBlackTree {
         }
 
         while (!isSentinel(current)) {
-            if (node.getJob().getJobID() != current.getJob().getJobID()) {
-                if (node.getJob().getJobID() > current.getJob().getJobID()) {
+            if (node.getKey() != current.getKey()) {
+                if (node.getKey() > current.getKey()) {
                     current.nodesToRight--;
                 }
 
-                if (node.getJob().getJobID() < current.getJob().getJobID()) {
+                if (node.getKey() < current.getKey()) {
                     current.nodesToLeft--;
                 }
 
@@ -536,12 +732,136 @@ public class RedBlackTree {
                 }
             }
 
+            updateAggregates(current);
+
             track = current;
             current = current.getParent();
         }
 
     }
 
+    /**
+     * Recomputes the aggregates of node from its own job and its children
+     */
+    private void updateAggregates(RedBlackNode node) {
+        updateAggregates(node, node.getLeft(), node.getRight());
+    }
+
+    /**
+     * Sets the aggregates of node as if left and right were its children
+     */
+    private void updateAggregates(RedBlackNode node, RedBlackNode left, RedBlackNode right) {
+        if (isSentinel(node)) return;
+
+        node.sumRemaining = left.sumRemaining + ownValue(node, SUM) + right.sumRemaining;
+        node.minExecuted = Math.min(Math.min(left.minExecuted, right.minExecuted), ownValue(node, MIN));
+        node.maxExecuted = Math.max(Math.max(left.maxExecuted, right.maxExecuted), ownValue(node, MAX));
+    }
+
+    private void updateAggregatesToRoot(RedBlackNode node) {
+        while (!isSentinel(node)) {
+            updateAggregates(node);
+            node = node.getParent();
+        }
+    }
+
+    /**
+     * Work left for a job, a job whose totalTime was lowered below its executedTime has none
+     */
+    private static long getRemaining(Job job) {
+        return Math.max(0, job.getTotalTime() - job.getExecutedTime());
+    }
+
+    /**
+     * Returns the total remaining work of the jobs with jobIds between jobId1 and jobId2
+     */
+    public long getSumRemainingInRange(int jobId1, int jobId2) {
+        return aggregateInRange(root, jobId1, jobId2, SUM);
+    }
+
+    /**
+     * Returns the smallest executedTime of the jobs with jobIds between jobId1 and jobId2, Long.MAX_VALUE if there are none
+     */
+    public long getMinExecutedInRange(int jobId1, int jobId2) {
+        return aggregateInRange(root, jobId1, jobId2, MIN);
+    }
+
+    /**
+     * Returns the largest executedTime of the jobs with jobIds between jobId1 and jobId2, Long.MIN_VALUE if there are none
+     */
+    public long getMaxExecutedInRange(int jobId1, int jobId2) {
+        return aggregateInRange(root, jobId1, jobId2, MAX);
+    }
+
+    /**
+     * Descends to the first node inside the range, then combines the subtree aggregates along
+     * the two boundary paths below it. Visits O(log n) nodes.
+     */
+    private long aggregateInRange(RedBlackNode r, int start, int end, int kind) {
+        while (!isSentinel(r)) {
+            int jobId = r.getKey();
+            if (end < jobId) r = r.getLeft();
+            else if (start > jobId) r = r.getRight();
+            else {
+                long res = combine(ownValue(r, kind), aggregateFrom(r.getLeft(), start, kind), kind);
+                return combine(res, aggregateTo(r.getRight(), end, kind), kind);
+            }
+        }
+        return identity(kind);
+    }
+
+    /**
+     * Aggregate over the jobs of the subtree with jobId >= start
+     */
+    private long aggregateFrom(RedBlackNode r, int start, int kind) {
+        long res = identity(kind);
+        while (!isSentinel(r)) {
+            if (r.getKey() >= start) {
+                res = combine(res, combine(ownValue(r, kind), subtreeValue(r.getRight(), kind), kind), kind);
+                r = r.getLeft();
+            } else {
+                r = r.getRight();
+            }
+        }
+        return res;
+    }
+
+    /**
+     * Aggregate over the jobs of the subtree with jobId <= end
+     */
+    private long aggregateTo(RedBlackNode r, int end, int kind) {
+        long res = identity(kind);
+        while (!isSentinel(r)) {
+            if (r.getKey() <= end) {
+                res = combine(res, combine(ownValue(r, kind), subtreeValue(r.getLeft(), kind), kind), kind);
+                r = r.getRight();
+            } else {
+                r = r.getLeft();
+            }
+        }
+        return res;
+    }
+
+    private static long ownValue(RedBlackNode node, int kind) {
+        if (node.isDeleted()) return identity(kind);
+        return (kind == SUM) ? getRemaining(node.getJob()) : node.getJob().getExecutedTime();
+    }
+
+    private static long subtreeValue(RedBlackNode node, int kind) {
+        if (kind == SUM) return node.sumRemaining;
+        return (kind == MIN) ? node.minExecuted : node.maxExecuted;
+    }
+
+    private static long combine(long a, long b, int kind) {
+        if (kind == SUM) return a + b;
+        return (kind == MIN) ? Math.min(a, b) : Math.max(a, b);
+    }
+
+    private static long identity(int kind) {
+        if (kind == SUM) return 0;
+        return (kind == MIN) ? Long.MAX_VALUE : Long.MIN_VALUE;
+    }
+
     /**
      * Returns the node with the lowest jobID that is greater than the given jobID of the node.
      */
@@ -588,12 +908,12 @@ public class RedBlackTree {
     public RedBlackNode getNextJobUtil(RedBlackNode subroot, RedBlackNode parent, int jobid) {
         if (isSentinel(subroot)) {
 	    if (parent == null) return null;
-            if (parent.getJob().jobID > jobid) return parent;
+            if (parent.getKey() > jobid) return parent;
             return getSuccessor(parent);
         }
-        if(subroot.getJob().jobID == jobid) return getSuccessor(subroot);
-        if (subroot.getJob().jobID > jobid) return getNextJobUtil(subroot.getLeft(), subroot, jobid);
-        if (subroot.getJob().jobID < jobid) return getNextJobUtil(subroot.getRight(), subroot, jobid);
+        if(subroot.getKey() == jobid) return getSuccessor(subroot);
+        if (subroot.getKey() > jobid) return getNextJobUtil(subroot.getLeft(), subroot, jobid);
+        if (subroot.getKey() < jobid) return getNextJobUtil(subroot.getRight(), subroot, jobid);
         return null;
     }
 
@@ -603,21 +923,95 @@ public class RedBlackTree {
     public RedBlackNode getPreviousJobUtil(RedBlackNode subroot, RedBlackNode parent, int jobid) {
         if (isSentinel(subroot)) {
 	    if (parent == null) return null;
-            if (parent.getJob().jobID < jobid) return parent;
+            if (parent.getKey() < jobid) return parent;
             return getPredecessor(parent);
         }
-        if(subroot.getJob().jobID == jobid) return getPredecessor(subroot);
-        if (subroot.getJob().jobID > jobid) return getPreviousJobUtil(subroot.getLeft(), subroot, jobid);
-        if (subroot.getJob().jobID < jobid) return getPreviousJobUtil(subroot.getRight(), subroot, jobid);
+        if(subroot.getKey() == jobid) return getPredecessor(subroot);
+        if (subroot.getKey() > jobid) return getPreviousJobUtil(subroot.getLeft(), subroot, jobid);
+        if (subroot.getKey() < jobid) return getPreviousJobUtil(subroot.getRight(), subroot, jobid);
         return null;
     }
 
     public RedBlackNode getNextJob(int jobId) {
-        return (root != null) ? getNextJobUtil(root, null, jobId) : null;
+        RedBlackNode node = (root != null) ? getNextJobUtil(root, null, jobId) : null;
+        while (node != null && !isSentinel(node) && node.isDeleted()) node = getSuccessor(node);
+        return (node == null || isSentinel(node)) ? null : node;
+    }
+
+    /**
+     * Answers a batch of NextJob probes in one pass. The probes are resolved in increasing order and
+     * each answer is reached from the previous one by successor steps, or by a search from the root
+     * when it is more than MAX_CURSOR_STEPS nodes away. Returns the nodes in the order of the probes,
+     * null where there is no next job.
+     */
+    public RedBlackNode[] getNextJobs(int[] jobIds) {
+        RedBlackNode[] result = new RedBlackNode[jobIds.length];
+        int[] order = sortedOrder(jobIds);
+        RedBlackNode cursor = null;
+
+        for (int i = 0; i < order.length; i++) {
+            int jobId = jobIds[order[i]];
+            if (i == 0) {
+                cursor = getNextJob(jobId);
+            } else if (cursor != null) {
+                for (int steps = 0; cursor != null && cursor.getKey() <= jobId && steps < MAX_CURSOR_STEPS; steps++) {
+                    cursor = nextLive(getSuccessor(cursor), true);
+                }
+                if (cursor != null && cursor.getKey() <= jobId) cursor = getNextJob(jobId);
+            }
+            result[order[i]] = cursor;
+        }
+        return result;
+    }
+
+    /**
+     * Answers a batch of PreviousJob probes in one pass, like getNextJobs but in decreasing order
+     */
+    public RedBlackNode[] getPreviousJobs(int[] jobIds) {
+        RedBlackNode[] result = new RedBlackNode[jobIds.length];
+        int[] order = sortedOrder(jobIds);
+        RedBlackNode cursor = null;
+
+        for (int i = order.length - 1; i >= 0; i--) {
+            int jobId = jobIds[order[i]];
+            if (i == order.length - 1) {
+                cursor = getPreviousJob(jobId);
+            } else if (cursor != null) {
+                for (int steps = 0; cursor != null && cursor.getKey() >= jobId && steps < MAX_CURSOR_STEPS; steps++) {
+                    cursor = nextLive(getPredecessor(cursor), false);
+                }
+                if (cursor != null && cursor.getKey() >= jobId) cursor = getPreviousJob(jobId);
+            }
+            result[order[i]] = cursor;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the first live node from node on in the given direction, null past the end of the tree
+     */
+    private RedBlackNode nextLive(RedBlackNode node, boolean forward) {
+        while (!isSentinel(node) && node.isDeleted()) node = forward ? getSuccessor(node) : getPredecessor(node);
+        return isSentinel(node) ? null : node;
+    }
+
+    /**
+     * Returns the positions of the keys in increasing key order
+     */
+    private static int[] sortedOrder(int[] keys) {
+        long[] packed = new long[keys.length];
+        for (int i = 0; i < keys.length; i++) packed[i] = ((long) keys[i] << 32) | i;
+        Arrays.sort(packed);
+
+        int[] order = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) order[i] = (int) packed[i];
+        return order;
     }
 
     public RedBlackNode getPreviousJob(int jobId) {
-        return (root != null) ? getPreviousJobUtil(root, null, jobId) : null;
+        RedBlackNode node = (root != null) ? getPreviousJobUtil(root, null, jobId) : null;
+        while (node != null && !isSentinel(node) && node.isDeleted()) node = getPredecessor(node);
+        return (node == null || isSentinel(node)) ? null : node;
     }
 
 
@@ -643,6 +1037,21 @@ public class RedBlackTree {
         return node;
     }
 
+    /**
+     * Returns the number of live jobs in the subtree rooted at node
+     */
+    private int subtreeSize(RedBlackNode node) {
+        if (isSentinel(node)) return 0;
+        return node.nodesToLeft + node.nodesToRight + weight(node);
+    }
+
+    /**
+     * Returns 1 for a live node and 0 for a tombstone
+     */
+    private static int weight(RedBlackNode node) {
+        return node.isDeleted() ? 0 : 1;
+    }
+
     /**
      * Helper function to check if a node is sentinel or not
      */
@@ -654,7 +1063,7 @@ public class RedBlackTree {
      * Returns the size of the RedBlack Tree
      */
     public int size() {
-        return root.nodesToLeft + root.nodesToRight +1;
+        return subtreeSize(root);
     }
 
     /**
@@ -671,16 +1080,163 @@ public class RedBlackTree {
      */
     private void getJobs(RedBlackNode r, int start, int end, List<RedBlackNode> res) {
         if (isSentinel(r)) return;
-        int jobId = r.getJob().getJobID();
+        int jobId = r.getKey();
         if (end < jobId) getJobs(r.left, start, end, res);
         else if (start > jobId) getJobs(r.right, start, end, res);
         else {
             getJobs(r.left, start, jobId, res);
-            res.add(r);
+            if (!r.isDeleted()) res.add(r);
             getJobs(r.right, jobId, end, res);
         }
     }
 
+    /**
+     * Returns the number of jobs with jobIds between jobId1 and jobId2, using the subtree counts
+     */
+    public int countInRange(int jobId1, int jobId2) {
+        if (jobId1 > jobId2) return 0;
+        return countAtMost(jobId2) - countLessThan(jobId1);
+    }
+
+    /**
+     * Returns the node of the rank-th job, counted from 0, among the jobs with a jobId of at least
+     * jobId1, null if there are not that many. Walks down once using the subtree counts.
+     */
+    public RedBlackNode getJobAtRank(int jobId1, int rank) {
+        rank += countLessThan(jobId1);
+        RedBlackNode r = root;
+        while (!isSentinel(r)) {
+            if (rank < r.nodesToLeft) {
+                r = r.getLeft();
+                continue;
+            }
+            rank -= r.nodesToLeft;
+            if (rank < weight(r)) return r;
+            rank -= weight(r);
+            r = r.getRight();
+        }
+        return null;
+    }
+
+    private int countLessThan(int key) {
+        int count = 0;
+        RedBlackNode r = root;
+        while (!isSentinel(r)) {
+            if (r.getKey() < key) {
+                count += r.nodesToLeft + weight(r);
+                r = r.getRight();
+            } else {
+                r = r.getLeft();
+            }
+        }
+        return count;
+    }
+
+    private int countAtMost(int key) {
+        int count = 0;
+        RedBlackNode r = root;
+        while (!isSentinel(r)) {
+            if (r.getKey() <= key) {
+                count += r.nodesToLeft + weight(r);
+                r = r.getRight();
+            } else {
+                r = r.getLeft();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Appends the jobs with jobIds between jobId1 and jobId2 to out, separated by commas, and returns
+     * how many were appended. Ranges of at least parallelThreshold jobs are formatted on the pool.
+     */
+    public int appendJobsInRange(int jobId1, int jobId2, StringBuilder out, ForkJoinPool pool, int parallelThreshold) {
+        int count = countInRange(jobId1, jobId2);
+        if (count == 0) return 0;
+
+        if (pool == null || parallelThreshold <= 0 || count < parallelThreshold) {
+            appendJobs(root, jobId1, jobId2, out, false);
+            return count;
+        }
+
+        int leafSize = Math.max(MIN_LEAF_SIZE, count / (pool.getParallelism() * 8));
+        List<StringBuilder> chunks = pool.invoke(new RangeFormatTask(root, jobId1, jobId2, leafSize));
+        for (int i = 0; i < chunks.size(); i++) {
+            if (i > 0) out.append(",");
+            out.append(chunks.get(i));
+        }
+        return count;
+    }
+
+    /**
+     * Appends the jobs of the subtree in range, returns true once anything has been appended
+     */
+    private boolean appendJobs(RedBlackNode r, int start, int end, StringBuilder out, boolean separate) {
+        while (!isSentinel(r)) {
+            int jobId = r.getKey();
+            if (end < jobId) r = r.getLeft();
+            else if (start > jobId) r = r.getRight();
+            else {
+                separate = appendJobs(r.getLeft(), start, jobId, out, separate);
+                if (!r.isDeleted()) {
+                    if (separate) out.append(",");
+                    out.append(r.getJob().toString());
+                    separate = true;
+                }
+                return appendJobs(r.getRight(), jobId, end, out, separate);
+            }
+        }
+        return separate;
+    }
+
+    /**
+     * Smallest number of jobs a RangeFormatTask formats on its own
+     */
+    private static final int MIN_LEAF_SIZE = 1024;
+
+    /**
+     * Formats the jobs of a subtree within a range into in-order chunks. Subtrees larger than the
+     * leaf size are split into a task per child, the scheduler thread waits while they run so the
+     * tree does not change underneath them.
+     */
+    @SuppressWarnings("serial")
+    private class RangeFormatTask extends RecursiveTask<List<StringBuilder>> {
+
+        private final RedBlackNode subroot;
+        private final int start, end;
+        private final int leafSize;
+
+        RangeFormatTask(RedBlackNode subroot, int start, int end, int leafSize) {
+            this.subroot = subroot;
+            this.start = start;
+            this.end = end;
+            this.leafSize = leafSize;
+        }
+
+        @Override
+        protected List<StringBuilder> compute() {
+            RedBlackNode r = subroot;
+            List<StringBuilder> chunks = new ArrayList<>();
+
+            while (!isSentinel(r) && r.nodesToLeft + r.nodesToRight + 1 > leafSize) {
+                int jobId = r.getKey();
+                if (end < jobId) r = r.getLeft();
+                else if (start > jobId) r = r.getRight();
+                else {
+                    RangeFormatTask right = new RangeFormatTask(r.getRight(), jobId, end, leafSize);
+                    right.fork();
+                    chunks.addAll(new RangeFormatTask(r.getLeft(), start, jobId, leafSize).compute());
+                    if (!r.isDeleted()) chunks.add(new StringBuilder(r.getJob().toString()));
+                    chunks.addAll(right.join());
+                    return chunks;
+                }
+            }
+
+            StringBuilder chunk = new StringBuilder();
+            if (appendJobs(r, start, end, chunk, false)) chunks.add(chunk);
+            return chunks;
+        }
+    }
 
 }
 
@@ -0,0 +1,268 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Compares the output of a scheduler run with a golden output file or with a second run, line by
+ * line, while both are being produced.
+ *
+ * java RegressionHarness input.txt --golden=output_file.txt [scheduler options]
+ * java RegressionHarness input.txt --candidate="scheduler options" [scheduler options]
+ *
+ * Runs execute on their own threads and stream their output lines through bounded queues, so no
+ * output file is ever held in memory. Lines are compared by a 64 bit hash first. The harness stops
+ * at the first divergence and prints the command and globalTime that produced each side's line,
+ * followed by the throughput of every run. The exit status is 0 if the outputs match and 1 otherwise.
+ */
+public class RegressionHarness {
+
+    private static final int QUEUE_SIZE = 4096;
+
+    /**
+     * One output line with the command that produced it
+     */
+    private static final class OutputLine {
+        static final OutputLine END = new OutputLine(null, 0, null);
+
+        final Command command;
+        final int globalTime;
+        final String text;
+        final long hash;
+
+        OutputLine(Command command, int globalTime, String text) {
+            this.command = command;
+            this.globalTime = globalTime;
+            this.text = text;
+            this.hash = (text != null) ? hash(text) : 0;
+        }
+    }
+
+    /**
+     * A source of output lines, either a scheduler run or a golden file
+     */
+    private interface LineSource {
+        OutputLine next() throws Exception;
+        String describe(OutputLine line);
+        String name();
+    }
+
+    /**
+     * Runs the scheduler on its own thread and queues every output line
+     */
+    private static final class SchedulerRun implements LineSource, Runnable {
+
+        private final String name;
+        private final String inputFile;
+        private final SchedulerOptions options;
+        private final BlockingQueue<OutputLine> lines = new ArrayBlockingQueue<>(QUEUE_SIZE);
+
+        private volatile long commands;
+        private volatile long outputLines;
+        private volatile long startNanos, endNanos;
+        private volatile Throwable failure;
+
+        SchedulerRun(String name, String inputFile, SchedulerOptions options) {
+            this.name = name;
+            this.inputFile = inputFile;
+            this.options = options;
+        }
+
+        @Override
+        public void run() {
+            startNanos = System.nanoTime();
+            try {
+                jobscheduler scheduler = new jobscheduler(options);
+                scheduler.setCommandListener(this::commandExecuted);
+
+                try (BufferedReader br = new BufferedReader(new FileReader(new File(inputFile)))) {
+                    scheduler.scheduleCommands(br);
+                    scheduler.runCommands();
+                }
+            } catch (Throwable t) {
+                failure = t;
+            }
+            endNanos = System.nanoTime();
+            put(OutputLine.END);
+        }
+
+        private void commandExecuted(Command command, int globalTime, CharSequence output) {
+            commands++;
+            int start = 0;
+            for (int i = 0; i < output.length(); i++) {
+                if (output.charAt(i) != '\n') continue;
+                put(new OutputLine(command, globalTime, output.subSequence(start, i).toString()));
+                outputLines++;
+                start = i + 1;
+            }
+        }
+
+        private void put(OutputLine line) {
+            try {
+                lines.put(line);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Run " + name + " interrupted", e);
+            }
+        }
+
+        @Override
+        public OutputLine next() throws Exception {
+            OutputLine line = lines.take();
+            if (line == OutputLine.END && failure != null) {
+                throw new IllegalStateException("Run " + name + " failed", failure);
+            }
+            return line;
+        }
+
+        @Override
+        public String describe(OutputLine line) {
+            return "command \"" + line.command + "\" at globalTime " + line.globalTime;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        String throughput() {
+            long end = (endNanos != 0) ? endNanos : System.nanoTime();
+            double seconds = Math.max(end - startNanos, 1) / 1e9;
+            return String.format("%s: %d commands, %d lines in %.3f s (%.0f commands/s, %.0f lines/s)%s",
+                    name, commands, outputLines, seconds, commands / seconds, outputLines / seconds,
+                    (endNanos != 0) ? "" : ", stopped early");
+        }
+    }
+
+    /**
+     * Reads the lines of a golden output file
+     */
+    private static final class GoldenFile implements LineSource {
+
+        private final String path;
+        private final BufferedReader reader;
+        private long lineNumber;
+
+        GoldenFile(String path) throws IOException {
+            this.path = path;
+            this.reader = new BufferedReader(new FileReader(new File(path)));
+        }
+
+        @Override
+        public OutputLine next() throws IOException {
+            String text = reader.readLine();
+            if (text == null) return OutputLine.END;
+            lineNumber++;
+            return new OutputLine(null, 0, text);
+        }
+
+        @Override
+        public String describe(OutputLine line) {
+            return "line " + lineNumber + " of " + path;
+        }
+
+        @Override
+        public String name() {
+            return "golden";
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String golden = null;
+        String candidate = null;
+        List<String> schedulerArgs = new ArrayList<>();
+
+        for (String arg : args) {
+            if (arg.startsWith("--golden=")) golden = arg.substring("--golden=".length());
+            else if (arg.startsWith("--candidate=")) candidate = arg.substring("--candidate=".length());
+            else schedulerArgs.add(arg);
+        }
+
+        SchedulerOptions baselineOptions = SchedulerOptions.parse(schedulerArgs.toArray(new String[0]));
+        String inputFile = baselineOptions.getInputFile();
+        if (inputFile == null || (golden == null) == (candidate == null)) {
+            throw new IllegalArgumentException("Usage: RegressionHarness input --golden=file | --candidate=\"options\" [options]");
+        }
+
+        SchedulerRun baseline = new SchedulerRun("baseline", inputFile, baselineOptions);
+        List<SchedulerRun> runs = new ArrayList<>();
+        runs.add(baseline);
+
+        LineSource other;
+        if (golden != null) {
+            other = new GoldenFile(golden);
+        } else {
+            List<String> candidateArgs = new ArrayList<>();
+            candidateArgs.add(inputFile);
+            for (String option : candidate.trim().split("\\s+")) {
+                if (!option.isEmpty()) candidateArgs.add(option);
+            }
+            SchedulerRun run = new SchedulerRun("candidate", inputFile, SchedulerOptions.parse(candidateArgs.toArray(new String[0])));
+            runs.add(run);
+            other = run;
+        }
+
+        for (SchedulerRun run : runs) {
+            Thread thread = new Thread(run, "regression-" + run.name());
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        boolean same = compare(baseline, other);
+
+        for (SchedulerRun run : runs) {
+            System.out.println(run.throughput());
+        }
+        System.exit(same ? 0 : 1);
+    }
+
+    /**
+     * Compares both sources until they end or diverge, returns true if they produced the same lines
+     */
+    private static boolean compare(LineSource a, LineSource b) throws Exception {
+        long lineNumber = 0;
+
+        while (true) {
+            OutputLine x = a.next();
+            OutputLine y = b.next();
+
+            if (x == OutputLine.END && y == OutputLine.END) {
+                System.out.println("Outputs match, " + lineNumber + " lines compared");
+                return true;
+            }
+            lineNumber++;
+
+            if (x == OutputLine.END || y == OutputLine.END || x.hash != y.hash || !x.text.equals(y.text)) {
+                System.out.println("Outputs diverge at line " + lineNumber);
+                report(a, x);
+                report(b, y);
+                return false;
+            }
+        }
+    }
+
+    private static void report(LineSource source, OutputLine line) {
+        if (line == OutputLine.END) {
+            System.out.println("  " + source.name() + ": <end of output>");
+        } else {
+            System.out.println("  " + source.name() + ": " + line.text);
+            System.out.println("    from " + source.describe(line));
+        }
+    }
+
+    /**
+     * 64 bit FNV-1a hash of a line
+     */
+    private static long hash(String text) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            h ^= text.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+}
@@ -0,0 +1,161 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ships everything a primary scheduler does to its standbys, one line per entry:
+ *
+ * "C globalTime: Name(args)"   a command executed at globalTime
+ * "Q slice"                    a quantum started for slice time units
+ * "E"                          end of a batch, the standby applies the batch at once
+ * "S"                          start of a snapshot, the lines up to the next "E" are jobscheduler.writeSnapshot's
+ *
+ * jobscheduler is deterministic, so executing the same commands at the same times with the same
+ * quanta rebuilds the same run queue and job index. Standbys may connect at any time. A standby
+ * first receives a snapshot taken under the scheduler's lock when it connects, then every batch
+ * after it, so the primary keeps no history.
+ *
+ * Every standby has its own send queue and sender thread. flush only appends to the queues and never
+ * waits for a socket. A standby whose queue grows MAX_LAG_BYTES beyond its snapshot is disconnected.
+ */
+public class ReplicationPrimary implements QuantumListener {
+
+    private static final long MAX_LAG_BYTES = 64L << 20;
+
+    private final ServerSocketChannel serverChannel;
+    private final jobscheduler scheduler;
+    private final List<Standby> standbys = new ArrayList<>();
+    private final StringBuilder batch = new StringBuilder();
+
+    /**
+     * A connected standby and the entries not written to it yet
+     */
+    private static final class Standby implements Runnable {
+        final SocketChannel channel;
+        final long maxQueuedBytes;
+        final LinkedBlockingQueue<ByteBuffer> queue = new LinkedBlockingQueue<>();
+        final AtomicLong queuedBytes = new AtomicLong();
+        final Thread sender;
+        volatile boolean closed;
+
+        Standby(SocketChannel channel, long maxQueuedBytes) {
+            this.channel = channel;
+            this.maxQueuedBytes = maxQueuedBytes;
+            this.sender = new Thread(this, "replication-send");
+            sender.setDaemon(true);
+        }
+
+        /**
+         * Queues a buffer without waiting, returns false once the standby is closed or lags too far behind
+         */
+        boolean offer(ByteBuffer buffer) {
+            if (closed) return false;
+            if (queuedBytes.addAndGet(buffer.remaining()) > maxQueuedBytes) {
+                close();
+                return false;
+            }
+            queue.add(buffer.duplicate());
+            return true;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    ByteBuffer buffer = queue.take();
+                    int length = buffer.remaining();
+                    while (buffer.hasRemaining()) channel.write(buffer);
+                    queuedBytes.addAndGet(-length);
+                }
+            } catch (IOException | InterruptedException e) {
+                // the standby is dropped, it reconnects for a new snapshot
+            }
+            close();
+        }
+
+        void close() {
+            closed = true;
+            sender.interrupt();
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private ReplicationPrimary(ServerSocketChannel serverChannel, jobscheduler scheduler) {
+        this.serverChannel = serverChannel;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Listens for standbys of scheduler on "tcp:port" (localhost only) or "unix:path". Snapshots are
+     * taken under the scheduler's lock, so it must be held while the scheduler runs and flushes.
+     */
+    public static ReplicationPrimary open(String address, jobscheduler scheduler) throws IOException {
+        ReplicationPrimary primary = new ReplicationPrimary(CommandServer.bind(address), scheduler);
+        Thread acceptor = new Thread(primary::acceptStandbys, "replication-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return primary;
+    }
+
+    /**
+     * Logs a command executed by the scheduler
+     */
+    public void commandExecuted(Command command, int globalTime) {
+        String text = command.toString();
+        batch.append("C ").append(globalTime).append(text, text.indexOf(':'), text.length()).append('\n');
+    }
+
+    @Override
+    public void quantumStarted(int jobId, int globalTime, int slice) {
+        batch.append("Q ").append(slice).append('\n');
+    }
+
+    /**
+     * Ends the current batch and queues it for every standby. Standbys that were closed or lag too far are dropped.
+     */
+    public synchronized void flush() {
+        if (batch.length() == 0) return;
+        batch.append("E\n");
+        ByteBuffer buffer = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.US_ASCII));
+        batch.setLength(0);
+
+        standbys.removeIf(standby -> !standby.offer(buffer));
+    }
+
+    private void acceptStandbys() {
+        try {
+            while (true) {
+                SocketChannel channel = serverChannel.accept();
+                synchronized (scheduler) {
+                    StringBuilder snapshot = new StringBuilder("S\n");
+                    try {
+                        scheduler.writeSnapshot(snapshot);
+                    } catch (RuntimeException e) {
+                        channel.close();
+                        continue;
+                    }
+                    snapshot.append("E\n");
+                    ByteBuffer buffer = ByteBuffer.wrap(snapshot.toString().getBytes(StandardCharsets.US_ASCII));
+
+                    Standby standby = new Standby(channel, MAX_LAG_BYTES + buffer.remaining());
+                    synchronized (this) {
+                        standby.offer(buffer);
+                        standbys.add(standby);
+                    }
+                    standby.sender.start();
+                }
+            }
+        } catch (IOException e) {
+            // the primary stops accepting standbys once its replication socket fails
+        }
+    }
+}
@@ -0,0 +1,138 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps a copy of a primary's scheduler up to date by replaying the log of a ReplicationPrimary.
+ *
+ * The log starts with a snapshot of the primary's scheduler taken when the standby connected. After
+ * that every command is scheduled at the time the primary executed it and every quantum gets the length
+ * the primary chose, so the copy passes through the same states. A batch is applied at once, under
+ * the scheduler's lock, so readers holding that lock see the state of a batch boundary and lag the
+ * primary by at most one batch. When the primary goes away the standby is promoted: it keeps its
+ * state and continues as a primary with its own quantum controller.
+ */
+public class ReplicationStandby implements Runnable {
+
+    private final jobscheduler scheduler;
+    private final ReplayedQuanta quanta;
+    private final BufferedReader log;
+
+    private volatile boolean promoted;
+    private volatile long appliedBatches;
+
+    /**
+     * Hands out the quantum lengths of the log and falls back to its own decisions once promoted
+     */
+    private static final class ReplayedQuanta extends QuantumController {
+        final ArrayDeque<Integer> slices = new ArrayDeque<>();
+        boolean promoted;
+
+        ReplayedQuanta(int min, int max) {
+            super(min, max);
+        }
+
+        @Override
+        public int nextQuantum(long remaining, int queueDepth) {
+            Integer slice = slices.poll();
+            if (slice != null) return slice;
+            if (!promoted) throw new IllegalStateException("Standby ran ahead of the replication log");
+            return super.nextQuantum(remaining, queueDepth);
+        }
+    }
+
+    public ReplicationStandby(String primaryAddress, SchedulerOptions options) throws IOException {
+        this.quanta = new ReplayedQuanta(options.getMinQuantum(), options.getMaxQuantum());
+        this.scheduler = new jobscheduler(options, quanta);
+        this.log = new BufferedReader(new InputStreamReader(
+                Channels.newInputStream(CommandServer.connect(primaryAddress)), StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * returns the replicated scheduler, lock it while reading from it
+     */
+    public jobscheduler getScheduler() {
+        return scheduler;
+    }
+
+    public boolean isPromoted() {
+        return promoted;
+    }
+
+    public long getAppliedBatches() {
+        return appliedBatches;
+    }
+
+    /**
+     * Restores the snapshot the log starts with and applies batches until the primary closes the log,
+     * then promotes the standby
+     */
+    @Override
+    public void run() {
+        List<Command> commands = new ArrayList<>();
+        List<Integer> slices = new ArrayList<>();
+        StringBuilder snapshot = null;
+        try {
+            String line;
+            while ((line = log.readLine()) != null) {
+                if (snapshot != null && !line.equals("E")) {
+                    snapshot.append(line).append('\n');
+                    continue;
+                }
+
+                switch (line.charAt(0)) {
+                    case 'S':
+                        snapshot = new StringBuilder();
+                        break;
+                    case 'C':
+                        commands.add(Command.parse(line.substring(2)));
+                        break;
+                    case 'Q':
+                        slices.add(Integer.parseInt(line.substring(2)));
+                        break;
+                    case 'E':
+                        if (snapshot != null) {
+                            restore(snapshot);
+                            snapshot = null;
+                            break;
+                        }
+                        apply(commands, slices);
+                        commands.clear();
+                        slices.clear();
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Malformed replication entry: " + line);
+                }
+            }
+        } catch (IOException e) {
+            // a broken connection ends replication like a closed one
+        }
+
+        synchronized (scheduler) {
+            quanta.promoted = true;
+            promoted = true;
+        }
+    }
+
+    private void restore(StringBuilder snapshot) throws IOException {
+        synchronized (scheduler) {
+            scheduler.restoreSnapshot(new BufferedReader(new StringReader(snapshot.toString())));
+            appliedBatches++;
+        }
+    }
+
+    private void apply(List<Command> commands, List<Integer> slices) {
+        synchronized (scheduler) {
+            quanta.slices.addAll(slices);
+            for (Command command : commands) scheduler.scheduleCommand(command);
+            scheduler.runCommands();
+            appliedBatches++;
+        }
+    }
+}
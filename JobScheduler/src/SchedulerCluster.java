@@ -0,0 +1,268 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Runs jobscheduler as a cluster of nodes that own disjoint jobID ranges.
+ *
+ * java SchedulerCluster input.txt --nodes=N [--key-space=K] [--rebalance-every=C] [scheduler options]
+ *
+ * A PartitionMap decides which node owns a jobID. Commands on one job go to its owner. NextJob,
+ * PreviousJob and the range commands go to every node owning part of the range and their answers
+ * are merged, PrintJob results in jobID order. Every node runs its own clock and executes its jobs
+ * independently, so a cluster does as much work per time unit as it has nodes.
+ *
+ * Input lines are read through the same lookahead as jobscheduler's, so they may be out of arrival
+ * time order by fewer than INPUT_LOOKAHEAD lines.
+ *
+ * Every C commands the most loaded node gives the upper part of its fullest partition to the least
+ * loaded node, about half the difference between them. The jobs keep their executed time, a quantum
+ * in flight on the old owner is not charged.
+ */
+public class SchedulerCluster {
+
+    private static final String NO_JOB = "(0,0,0)";
+
+    /**
+     * An input command waiting in the lookahead, commands with the same arrival time keep their line order
+     */
+    private static final class PendingCommand implements Comparable<PendingCommand> {
+        final Command command;
+        final long line;
+
+        PendingCommand(Command command, long line) {
+            this.command = command;
+            this.line = line;
+        }
+
+        @Override
+        public int compareTo(PendingCommand other) {
+            int byTime = Integer.compare(command.getArrivalTime(), other.command.getArrivalTime());
+            return (byTime != 0) ? byTime : Long.compare(line, other.line);
+        }
+    }
+
+    private final Transport transport;
+    private final PartitionMap partitions;
+
+    /**
+     * Arrival time of the last routed command, migrations happen at this time
+     */
+    private int time;
+    private long migratedJobs;
+
+    public SchedulerCluster(Transport transport, PartitionMap partitions) {
+        this.transport = transport;
+        this.partitions = partitions;
+    }
+
+    public PartitionMap getPartitions() {
+        return partitions;
+    }
+
+    public long getMigratedJobs() {
+        return migratedJobs;
+    }
+
+    /**
+     * Routes a command and returns its output line without a line break, null for commands without output
+     */
+    public String execute(Command command) throws IOException {
+        time = Math.max(time, command.getArrivalTime());
+        String line = command.toString();
+        int p1 = command.getArg(0);
+        int p2 = (command.getArgCount() > 1) ? command.getArg(1) : p1;
+
+        switch (command.getName()) {
+            case "NextJob": {
+                String best = NO_JOB;
+                if (p1 == Integer.MAX_VALUE) return best;
+                for (String response : fanOut(p1 + 1, Integer.MAX_VALUE, line)) {
+                    if (!response.equals(NO_JOB) && (best.equals(NO_JOB) || jobIdOf(response) < jobIdOf(best))) best = response;
+                }
+                return best;
+            }
+
+            case "PreviousJob": {
+                String best = NO_JOB;
+                if (p1 == 0) return best;
+                for (String response : fanOut(0, p1 - 1, line)) {
+                    if (!response.equals(NO_JOB) && (best.equals(NO_JOB) || jobIdOf(response) > jobIdOf(best))) best = response;
+                }
+                return best;
+            }
+
+            case "PrintJob":
+                return mergeJobLists(fanOut(p1, p2, line));
+
+            case "SumRemaining": {
+                long sum = 0;
+                for (String response : fanOut(p1, p2, line)) sum += Long.parseLong(response);
+                return Long.toString(sum);
+            }
+
+            case "MaxExecuted": {
+                long max = 0;
+                for (String response : fanOut(p1, p2, line)) max = Math.max(max, Long.parseLong(response));
+                return Long.toString(max);
+            }
+
+            default: {
+                String response = transport.call(partitions.ownerOf(p1), line);
+                return response.equals("OK") ? null : response;
+            }
+        }
+    }
+
+    /**
+     * Moves jobs from the most to the least loaded node if their sizes differ by more than tolerance
+     * times the mean size. Returns the number of jobs moved.
+     */
+    public int rebalance(double tolerance) throws IOException {
+        int nodes = transport.getNodeCount();
+        int[] sizes = new int[nodes];
+        long total = 0;
+        int most = 0, least = 0;
+        for (int node = 0; node < nodes; node++) {
+            sizes[node] = Integer.parseInt(transport.call(node, "SIZE"));
+            total += sizes[node];
+            if (sizes[node] > sizes[most]) most = node;
+            if (sizes[node] < sizes[least]) least = node;
+        }
+
+        int difference = sizes[most] - sizes[least];
+        if (difference < 2 || difference <= tolerance * total / nodes) return 0;
+
+        /**
+         * The fullest partition of the most loaded node gives away its upper jobs
+         */
+        int partition = -1, partitionSize = 0;
+        for (int p = 0; p < partitions.size(); p++) {
+            if (partitions.getOwner(p) != most) continue;
+            int count = Integer.parseInt(transport.call(most, "COUNT " + partitions.getStart(p) + " " + partitions.getEnd(p)));
+            if (count > partitionSize) {
+                partition = p;
+                partitionSize = count;
+            }
+        }
+        if (partition < 0) return 0;
+
+        int start = partitions.getStart(partition);
+        int end = partitions.getEnd(partition);
+        int move = Math.min(difference / 2, partitionSize);
+        if (move < partitionSize) {
+            start = Integer.parseInt(transport.call(most, "KEY " + start + " " + end + " " + (partitionSize - move)));
+        }
+
+        String jobs = transport.call(most, "EXPORT " + time + " " + start + " " + end);
+        transport.call(least, "IMPORT " + time + "\n" + jobs);
+        partitions.assign(start, end, least);
+
+        migratedJobs += move;
+        return move;
+    }
+
+    /**
+     * Sends the command to every node owning part of the range and returns their responses
+     */
+    private List<String> fanOut(int jobId1, int jobId2, String line) throws IOException {
+        List<String> responses = new ArrayList<>();
+        for (int node : partitions.ownersOf(jobId1, jobId2)) {
+            responses.add(transport.call(node, line));
+        }
+        return responses;
+    }
+
+    /**
+     * Merges PrintJob outputs of several nodes into one list ordered by jobID
+     */
+    private static String mergeJobLists(List<String> responses) {
+        List<String[]> lists = new ArrayList<>();
+        for (String response : responses) {
+            if (!response.equals(NO_JOB)) lists.add(response.substring(1, response.length() - 1).split("\\),\\("));
+        }
+        if (lists.isEmpty()) return NO_JOB;
+        if (lists.size() == 1) return responses.get(indexOfNonEmpty(responses));
+
+        int[] next = new int[lists.size()];
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            int best = -1;
+            for (int i = 0; i < lists.size(); i++) {
+                if (next[i] == lists.get(i).length) continue;
+                if (best < 0 || jobIdOf(lists.get(i)[next[i]]) < jobIdOf(lists.get(best)[next[best]])) best = i;
+            }
+            if (best < 0) return sb.toString();
+
+            if (sb.length() > 0) sb.append(",");
+            sb.append("(").append(lists.get(best)[next[best]++]).append(")");
+        }
+    }
+
+    private static int indexOfNonEmpty(List<String> responses) {
+        for (int i = 0; i < responses.size(); i++) {
+            if (!responses.get(i).equals(NO_JOB)) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * returns the jobID of a formatted job, with or without its opening parenthesis
+     */
+    private static int jobIdOf(String job) {
+        int from = job.startsWith("(") ? 1 : 0;
+        return Integer.parseInt(job.substring(from, job.indexOf(',')));
+    }
+
+    public static void main(String[] args) throws IOException {
+        int nodes = 1;
+        int keySpace = 1 << 16;
+        int rebalanceEvery = 0;
+        List<String> schedulerArgs = new ArrayList<>();
+
+        for (String arg : args) {
+            if (arg.startsWith("--nodes=")) nodes = Integer.parseInt(arg.substring("--nodes=".length()));
+            else if (arg.startsWith("--key-space=")) keySpace = Integer.parseInt(arg.substring("--key-space=".length()));
+            else if (arg.startsWith("--rebalance-every=")) rebalanceEvery = Integer.parseInt(arg.substring("--rebalance-every=".length()));
+            else schedulerArgs.add(arg);
+        }
+
+        SchedulerOptions options = SchedulerOptions.parse(schedulerArgs.toArray(new String[0]));
+        if (options.getInputFile() == null) throw new IllegalArgumentException("Input file needed");
+
+        LoopbackTransport transport = new LoopbackTransport();
+        for (int node = 0; node < nodes; node++) {
+            transport.addNode(new ClusterNode(options));
+        }
+        SchedulerCluster cluster = new SchedulerCluster(transport, new PartitionMap(nodes, keySpace));
+
+        try (BufferedReader br = new BufferedReader(new FileReader(new File(options.getInputFile())));
+             BufferedWriter bw = new BufferedWriter(new FileWriter(new File("output_file.txt")))) {
+            PriorityQueue<PendingCommand> lookahead = new PriorityQueue<>();
+            long lines = 0;
+            int executed = 0;
+            String s = br.readLine();
+
+            while (s != null || !lookahead.isEmpty()) {
+                while (s != null && lookahead.size() < jobscheduler.INPUT_LOOKAHEAD) {
+                    if (!s.trim().isEmpty()) lookahead.add(new PendingCommand(Command.parse(s), lines++));
+                    s = br.readLine();
+                }
+                if (lookahead.isEmpty()) break;
+
+                String output = cluster.execute(lookahead.poll().command);
+                if (output != null) bw.write(output + "\n");
+                if (rebalanceEvery > 0 && ++executed % rebalanceEvery == 0) cluster.rebalance(0.25);
+            }
+        }
+
+        System.out.println("Partitions: " + cluster.getPartitions());
+        System.out.println("Migrated jobs: " + cluster.getMigratedJobs());
+    }
+}
@@ -0,0 +1,63 @@
+public class SchedulerEvent {
+
+    private EventType type;
+    private long time;
+    private Command command;
+    private Job job;
+    private int slice;
+
+    /**
+     * jobID of a dense job's JOB_RELEASE, dense jobs have no Job object
+     */
+    int jobId;
+
+    /**
+     * Link to the next event in the same timing wheel slot
+     */
+    SchedulerEvent next;
+
+    public SchedulerEvent(EventType type, long time, Command command) {
+        reset(type, time, command, null, 0);
+    }
+
+    public SchedulerEvent(EventType type, long time, Job job, int slice) {
+        reset(type, time, null, job, slice);
+    }
+
+    /**
+     * Reinitializes a recycled event
+     */
+    void reset(EventType type, long time, Command command, Job job, int slice) {
+        this.type = type;
+        this.time = time;
+        this.command = command;
+        this.job = job;
+        this.slice = slice;
+        this.jobId = 0;
+        this.next = null;
+    }
+
+    public EventType getType() {
+        return type;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public Command getCommand() {
+        return command;
+    }
+
+    public Job getJob() {
+        return job;
+    }
+
+    public int getSlice() {
+        return slice;
+    }
+
+    public int getJobId() {
+        return jobId;
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * Command line options of jobscheduler. Options have the form --name=value, any other argument is
+ * taken as the input file.
+ */
+public class SchedulerOptions {
+
+    private String inputFile;
+    private String serverAddress;
+    private String replicateAddress;
+    private String standbyAddress;
+    private DuplicatePolicy duplicatePolicy = DuplicatePolicy.REJECT;
+    private int arenaSlabSize;
+    private int parallelRangeThreshold;
+    private double lazyDeleteRatio;
+    private boolean denseIds;
+    private boolean reportStartup;
+    private int minQuantum = QuantumController.BASE;
+    private int maxQuantum = QuantumController.BASE;
+    private boolean reportQuantum;
+
+    public static SchedulerOptions parse(String[] args) {
+        SchedulerOptions options = new SchedulerOptions();
+
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                options.inputFile = arg;
+                continue;
+            }
+
+            int eq = arg.indexOf('=');
+            String name = (eq < 0) ? arg.substring(2) : arg.substring(2, eq);
+            String value = (eq < 0) ? "" : arg.substring(eq + 1);
+
+            switch (name) {
+                case "server":
+                    options.serverAddress = value;
+                    break;
+                case "replicate":
+                    options.replicateAddress = value;
+                    break;
+                case "standby":
+                    options.standbyAddress = value;
+                    break;
+                case "duplicates":
+                    options.duplicatePolicy = DuplicatePolicy.valueOf(value.toUpperCase());
+                    break;
+                case "arena":
+                    options.arenaSlabSize = value.isEmpty() ? 4096 : Integer.parseInt(value);
+                    break;
+                case "parallel-range":
+                    options.parallelRangeThreshold = Integer.parseInt(value);
+                    break;
+                case "quantum": {
+                    int comma = value.indexOf(',');
+                    options.minQuantum = Integer.parseInt(comma < 0 ? value : value.substring(0, comma));
+                    options.maxQuantum = (comma < 0) ? options.minQuantum : Integer.parseInt(value.substring(comma + 1));
+                    break;
+                }
+                case "report-quantum":
+                    options.reportQuantum = true;
+                    break;
+                case "report-startup":
+                    options.reportStartup = true;
+                    break;
+                case "dense-ids":
+                    options.denseIds = true;
+                    break;
+                case "lazy-delete":
+                    options.lazyDeleteRatio = value.isEmpty() ? 0.25 : Double.parseDouble(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        return options;
+    }
+
+    public String getInputFile() {
+        return inputFile;
+    }
+
+    public String getServerAddress() {
+        return serverAddress;
+    }
+
+    /**
+     * Address standbys connect to for the replication log of this server, null if it does not replicate
+     */
+    public String getReplicateAddress() {
+        return replicateAddress;
+    }
+
+    /**
+     * Replication address of the primary this server follows, null unless it is a standby
+     */
+    public String getStandbyAddress() {
+        return standbyAddress;
+    }
+
+    /**
+     * What Insert does with a jobID that is already in the tree
+     */
+    public DuplicatePolicy getDuplicatePolicy() {
+        return duplicatePolicy;
+    }
+
+    public void setDuplicatePolicy(DuplicatePolicy duplicatePolicy) {
+        this.duplicatePolicy = duplicatePolicy;
+    }
+
+    /**
+     * Number of Jobs and RedBlackNodes the arena preallocates at a time, 0 when arena mode is off
+     */
+    public int getArenaSlabSize() {
+        return arenaSlabSize;
+    }
+
+    public void setArenaSlabSize(int arenaSlabSize) {
+        this.arenaSlabSize = arenaSlabSize;
+    }
+
+    /**
+     * Smallest PrintJob range, in jobs, that is formatted on the ForkJoinPool, 0 to always format serially
+     */
+    public int getParallelRangeThreshold() {
+        return parallelRangeThreshold;
+    }
+
+    public void setParallelRangeThreshold(int parallelRangeThreshold) {
+        this.parallelRangeThreshold = parallelRangeThreshold;
+    }
+
+    /**
+     * Share of tombstones in the RedBlackTree that starts an incremental sweep, 0 when jobs are removed eagerly
+     */
+    public double getLazyDeleteRatio() {
+        return lazyDeleteRatio;
+    }
+
+    public void setLazyDeleteRatio(double lazyDeleteRatio) {
+        this.lazyDeleteRatio = lazyDeleteRatio;
+    }
+
+    /**
+     * True if jobs and their run queue live in a DenseJobStore instead of Jobs, the MinHeap and the RedBlackTree
+     */
+    public boolean isDenseIds() {
+        return denseIds;
+    }
+
+    public void setDenseIds(boolean denseIds) {
+        this.denseIds = denseIds;
+    }
+
+    /**
+     * True if the time from JVM start to the first executed command is printed to stderr
+     */
+    public boolean isReportStartup() {
+        return reportStartup;
+    }
+
+    public void setReportStartup(boolean reportStartup) {
+        this.reportStartup = reportStartup;
+    }
+
+    /**
+     * Bounds of the quantum length, equal unless the quantum adapts to load. Set with --quantum=N or --quantum=min,max
+     */
+    public int getMinQuantum() {
+        return minQuantum;
+    }
+
+    public int getMaxQuantum() {
+        return maxQuantum;
+    }
+
+    public void setQuantumBounds(int minQuantum, int maxQuantum) {
+        this.minQuantum = minQuantum;
+        this.maxQuantum = maxQuantum;
+    }
+
+    /**
+     * True if the decisions of the quantum controller are printed to stderr at exit
+     */
+    public boolean isReportQuantum() {
+        return reportQuantum;
+    }
+
+    public void setReportQuantum(boolean reportQuantum) {
+        this.reportQuantum = reportQuantum;
+    }
+}
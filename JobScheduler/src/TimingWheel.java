@@ -0,0 +1,209 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel holding future scheduler events.
+ *
+ * Level 0 has one slot per time unit, every higher level has slots that are SLOTS times wider than
+ * the level below it. An event is placed on the lowest level whose slot still separates it from the
+ * current time, so insertion is O(1). When the lower levels run dry the next occupied slot of a higher
+ * level is cascaded down. Events within a slot are kept in insertion order.
+ */
+public class TimingWheel {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 6;
+
+    private final SchedulerEvent[][] heads = new SchedulerEvent[LEVELS][SLOTS];
+    private final SchedulerEvent[][] tails = new SchedulerEvent[LEVELS][SLOTS];
+
+    /**
+     * One bit per non-empty slot on each level
+     */
+    private final long[] occupied = new long[LEVELS];
+
+    /**
+     * Events too far in the future for the wheel, kept unsorted in insertion order
+     */
+    private SchedulerEvent overflowHead, overflowTail;
+
+    private long currentTime;
+    private int size;
+
+    public TimingWheel() {
+        this(0);
+    }
+
+    public TimingWheel(long startTime) {
+        this.currentTime = startTime;
+    }
+
+    /**
+     * returns the number of events in the wheel
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * returns true if wheel is empty, false otherwise
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * returns the time the wheel has been advanced to
+     */
+    public long getCurrentTime() {
+        return currentTime;
+    }
+
+    /**
+     * Adds an event to the wheel. Events that are already due fire at the current time.
+     */
+    public void schedule(SchedulerEvent event) {
+        size++;
+        long time = Math.max(event.getTime(), currentTime);
+        int level = getLevel(time);
+        event.next = null;
+
+        if (level >= LEVELS) {
+            if (overflowHead == null) {
+                overflowHead = event;
+            } else {
+                overflowTail.next = event;
+            }
+            overflowTail = event;
+            return;
+        }
+
+        int slot = (int) ((time >>> (level * SLOT_BITS)) & SLOT_MASK);
+        if (heads[level][slot] == null) {
+            heads[level][slot] = event;
+            occupied[level] |= 1L << slot;
+        } else {
+            tails[level][slot].next = event;
+        }
+        tails[level][slot] = event;
+    }
+
+    /**
+     * Moves the current time forward to the earliest scheduled event and returns it.
+     * The time does not change if the wheel is empty or events are due at the current time.
+     */
+    public long advance() {
+        while (size > 0) {
+            long due = occupied[0] & (-1L << (int) (currentTime & SLOT_MASK));
+            if (due != 0) {
+                currentTime = (currentTime & ~SLOT_MASK) | Long.numberOfTrailingZeros(due);
+                return currentTime;
+            }
+            if (!cascade()) {
+                refillFromOverflow();
+            }
+        }
+        return currentTime;
+    }
+
+    /**
+     * Returns the scheduled events in the order they fire. Events due at the same time are always
+     * in the same slot or in the overflow list, in insertion order, so a stable sort keeps their order.
+     */
+    public List<SchedulerEvent> getEvents() {
+        List<SchedulerEvent> events = new ArrayList<>(size);
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                for (SchedulerEvent e = heads[level][slot]; e != null; e = e.next) events.add(e);
+            }
+        }
+        for (SchedulerEvent e = overflowHead; e != null; e = e.next) events.add(e);
+
+        events.sort(Comparator.comparingLong(e -> Math.max(e.getTime(), currentTime)));
+        return events;
+    }
+
+    /**
+     * Removes and returns the next event due at the current time, or null if there is none
+     */
+    public SchedulerEvent poll() {
+        int slot = (int) (currentTime & SLOT_MASK);
+        SchedulerEvent event = heads[0][slot];
+        if (event == null) return null;
+
+        heads[0][slot] = event.next;
+        if (event.next == null) {
+            tails[0][slot] = null;
+            occupied[0] &= ~(1L << slot);
+        }
+        event.next = null;
+        size--;
+        return event;
+    }
+
+    /**
+     * Returns the lowest level whose slots separate time from the current time
+     */
+    private int getLevel(long time) {
+        long diff = time ^ currentTime;
+        if (diff == 0) return 0;
+        return (63 - Long.numberOfLeadingZeros(diff)) / SLOT_BITS;
+    }
+
+    /**
+     * Moves the current time to the next occupied slot of the lowest non-empty higher level and
+     * redistributes its events over the levels below. Returns false if all higher levels are empty.
+     */
+    private boolean cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            int shift = level * SLOT_BITS;
+            int index = (int) ((currentTime >>> shift) & SLOT_MASK);
+            long due = (index == SLOT_MASK) ? 0 : occupied[level] & (-1L << (index + 1));
+
+            if (due != 0) {
+                int slot = Long.numberOfTrailingZeros(due);
+                long levelMask = (1L << (shift + SLOT_BITS)) - 1;
+                currentTime = (currentTime & ~levelMask) | ((long) slot << shift);
+
+                SchedulerEvent event = heads[level][slot];
+                heads[level][slot] = null;
+                tails[level][slot] = null;
+                occupied[level] &= ~(1L << slot);
+
+                while (event != null) {
+                    SchedulerEvent next = event.next;
+                    size--;
+                    schedule(event);
+                    event = next;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Jumps to the earliest overflow event and puts every overflow event back into the wheel
+     */
+    private void refillFromOverflow() {
+        SchedulerEvent event = overflowHead;
+        long earliest = Long.MAX_VALUE;
+        for (SchedulerEvent e = event; e != null; e = e.next) {
+            earliest = Math.min(earliest, e.getTime());
+        }
+
+        overflowHead = null;
+        overflowTail = null;
+        currentTime = Math.max(currentTime, earliest);
+
+        while (event != null) {
+            SchedulerEvent next = event.next;
+            size--;
+            schedule(event);
+            event = next;
+        }
+    }
+}
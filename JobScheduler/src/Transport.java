@@ -0,0 +1,25 @@
+import java.io.IOException;
+
+/**
+ * Carries requests from a SchedulerCluster to its nodes. Requests and responses are plain text so
+ * that an implementation can send them over any connection.
+ */
+public interface Transport {
+
+    /**
+     * Answers the requests sent to one node
+     */
+    interface Handler {
+        String handle(String request);
+    }
+
+    /**
+     * Sends a request to a node and waits for its response
+     */
+    String call(int node, String request) throws IOException;
+
+    /**
+     * returns the number of nodes reachable through the transport, numbered from 0
+     */
+    int getNodeCount();
+}
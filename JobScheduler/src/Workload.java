@@ -0,0 +1,24 @@
+/**
+ * A real task executed by the LiveScheduler in time slices.
+ *
+ * Workloads yield cooperatively: between units of work they compare System.nanoTime() with the
+ * deadline of the current slice and return once it has passed.
+ */
+public interface Workload {
+
+    /**
+     * Runs the task until it completes or reaches a yield point at or after deadlineNanos.
+     * Returns true once the task has completed.
+     */
+    boolean runSlice(long deadlineNanos) throws Exception;
+
+    /**
+     * Wraps a plain Runnable. It has no yield points, so it completes within its first slice.
+     */
+    static Workload of(Runnable task) {
+        return deadlineNanos -> {
+            task.run();
+            return true;
+        };
+    }
+}
@@ -1,127 +1,933 @@
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
 import java.util.List;
-import java.util.NoSuchElementException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
 
 
 public class jobscheduler {
+
+    /**
+     * Commands read from the input ahead of their execution
+     */
+    static final int INPUT_LOOKAHEAD = 4096;
+
     private int globalTime;
     private StringBuilder jobInfo;
     private MinHeap jobQueue;
     private RedBlackTree jobTree;
 
+    /**
+     * Replaces jobTree and jobQueue when jobIDs are dense. The store holds every job and the run
+     * queue, so this mode keeps no Job objects: the running job is runningJobId and a delayed job
+     * is known by its pending release event.
+     */
+    private DenseJobStore denseJobs;
+    private JobIndex<SchedulerEvent> denseReleases;
+    private int runningJobId;
+    private boolean denseRunning;
+
+    /**
+     * Set when the running dense job left the store, its quantum is not charged
+     */
+    private boolean runningRetired;
+
+    /**
+     * Output of the command being executed, handed to the listener once it completes
+     */
+    private final StringBuilder commandOutput = new StringBuilder();
+    private CommandListener listener;
+    private QuantumListener quantumListener;
+
+    /**
+     * Future command arrivals, quantum expirations and delayed job releases
+     */
+    private TimingWheel eventWheel;
+
+    /**
+     * Commands that arrived while a quantum was running, in arrival order
+     */
+    private ArrayDeque<Command> pendingCommands;
+    private int outstandingCommands;
+
+    /**
+     * Command lines not read yet, null once they are all scheduled
+     */
+    private BufferedReader input;
+    private Job runningJob;
+
+    private final SchedulerOptions options;
+
+    /**
+     * Recycled Jobs and RedBlackNodes, null unless arena mode is on
+     */
+    private final JobArena arena;
+
+    /**
+     * Handled events, reused for the next quantum or release
+     */
+    private SchedulerEvent freeEvents;
+
+    /**
+     * Formats very wide PrintJob ranges in parallel, null unless a parallel range threshold is set
+     */
+    private final ForkJoinPool rangePool;
+
+    /**
+     * Picks the length of every quantum
+     */
+    private final QuantumController quantumController;
+
+    /**
+     * When main was entered and the first command was executed, for --report-startup
+     */
+    private static long mainMillis, mainNanos;
+    private long firstCommandNanos;
+
+    /**
+     * Starts a quantum for the job. The job is charged for the slice when the quantum expires.
+     */
     private void executeJob(Job currJob) {
 
-        int jobExecutedTime = Math.min(5, currJob.getTotalTime() - currJob.getExecutedTime());
+        int jobExecutedTime = quantumController.nextQuantum(currJob.getTotalTime() - currJob.getExecutedTime(), jobQueue.getSize() + 1);
+
+        runningJob = currJob;
+        if (quantumListener != null) quantumListener.quantumStarted(currJob.getJobID(), globalTime, jobExecutedTime);
+        eventWheel.schedule(newEvent(EventType.QUANTUM_EXPIRED, globalTime + jobExecutedTime, null, currJob, jobExecutedTime));
+    }
+
+    /**
+     * Charges the running job for its quantum and either retires it or puts it back in the queue
+     */
+    private void expireQuantum(Job currJob, int jobExecutedTime) {
+
+        runningJob = null;
+        if (currJob.isCancelled()) {
+            recycleJob(currJob);
+            return;
+        }
 
         currJob.incrementExecutedTime(jobExecutedTime);
-        globalTime += jobExecutedTime;
 
-        if (currJob.getExecutedTime() == currJob.getTotalTime()) {
+        if (currJob.isFinished()) {
             jobTree.removeJob(currJob.getJobID());
+            recycleJob(currJob);
         } else {
-            jobQueue.insertJob(currJob);
+            jobTree.jobUpdated(currJob);
+            if (!currJob.isSuspended()) jobQueue.insertJob(currJob);
 
         }
     }
 
-    public static void main (String[] args) throws IOException, IllegalArgumentException {
-        new jobscheduler().run(args);
+    /**
+     * Removes a job from both structures, a running or delayed job is dropped when its event fires
+     */
+    private void retireJob(Job job) {
+        job.setCancelled(true);
+        jobTree.removeJob(job.getJobID());
+        jobQueue.removeJob(job);
+        recycleJob(job);
+    }
+
+    /**
+     * Returns a job that left the system to the arena once no event refers to it anymore
+     */
+    private void recycleJob(Job job) {
+        if (arena != null && job != runningJob && !job.isDelayed()) arena.releaseJob(job);
+    }
+
+    /**
+     * Starts a quantum for the dense job, see executeJob
+     */
+    private void executeDenseJob(int jobId) {
+
+        long remaining = denseJobs.getTotalTime(jobId) - denseJobs.getExecutedTime(jobId);
+        int jobExecutedTime = quantumController.nextQuantum(remaining, denseJobs.queueSize() + 1);
+
+        runningJobId = jobId;
+        denseRunning = true;
+        if (quantumListener != null) quantumListener.quantumStarted(jobId, globalTime, jobExecutedTime);
+        eventWheel.schedule(newEvent(EventType.QUANTUM_EXPIRED, globalTime + jobExecutedTime, null, null, jobExecutedTime));
+    }
+
+    /**
+     * Charges the running dense job for its quantum, see expireQuantum
+     */
+    private void expireDenseQuantum(int jobExecutedTime) {
+
+        denseRunning = false;
+        if (runningRetired) {
+            runningRetired = false;
+            return;
+        }
+
+        long executedTime = denseJobs.getExecutedTime(runningJobId) + jobExecutedTime;
+        int totalTime = denseJobs.getTotalTime(runningJobId);
+
+        if (executedTime >= totalTime) {
+            denseJobs.remove(runningJobId);
+        } else {
+            denseJobs.update(runningJobId, executedTime, totalTime);
+            if (!denseJobs.isSuspended(runningJobId)) denseJobs.enqueue(runningJobId);
+        }
     }
-    public void run(String[] args) throws IOException, IllegalArgumentException {
 
-        if (args.length == 0) throw new IllegalArgumentException ("Input file needed");
+    /**
+     * Queues a delayed dense job unless it left the store or was suspended while it waited
+     */
+    private void releaseDenseJob(SchedulerEvent event) {
+        int jobId = event.getJobId();
+        if (denseReleases.get(jobId) != event) return;
 
-        jobQueue = new MinHeap();
-        jobTree = new RedBlackTree();
+        denseReleases.remove(jobId);
+        if (!denseJobs.isSuspended(jobId)) denseJobs.enqueue(jobId);
+    }
+
+    /**
+     * Removes a dense job from the store and the run queue, a running or delayed one is dropped when its event fires
+     */
+    private void retireDenseJob(int jobId) {
+        if (isRunningDense(jobId)) runningRetired = true;
+        denseReleases.remove(jobId);
+        denseJobs.remove(jobId);
+    }
+
+    private void delayDenseJob(int jobId, int releaseTime) {
+        SchedulerEvent event = newEvent(EventType.JOB_RELEASE, releaseTime, null, null, 0);
+        event.jobId = jobId;
+        denseReleases.put(jobId, event);
+        eventWheel.schedule(event);
+    }
+
+    private boolean isRunningDense(int jobId) {
+        return denseRunning && !runningRetired && runningJobId == jobId;
+    }
+
+    /**
+     * Starts a quantum for the job at the head of the run queue, returns false if the queue is empty
+     */
+    private boolean startQuantum() {
+        if (denseJobs != null) {
+            if (denseJobs.queueSize() == 0) return false;
+            executeDenseJob(denseJobs.dequeue());
+            return true;
+        }
+
+        Job job = jobQueue.removeJob();
+        if (job == null) return false;
+        executeJob(job);
+        return true;
+    }
+
+    private SchedulerEvent newEvent(EventType type, long time, Command command, Job job, int slice) {
+        SchedulerEvent event = freeEvents;
+        if (event == null) return (command != null) ? new SchedulerEvent(type, time, command) : new SchedulerEvent(type, time, job, slice);
+
+        freeEvents = event.next;
+        event.reset(type, time, command, job, slice);
+        return event;
+    }
+
+    private void recycleEvent(SchedulerEvent event) {
+        event.reset(null, 0, null, null, 0);
+        event.next = freeEvents;
+        freeEvents = event;
+    }
+
+    public jobscheduler() {
+        this(new SchedulerOptions());
+    }
+
+    public jobscheduler(SchedulerOptions options) {
+        this(options, new QuantumController(options.getMinQuantum(), options.getMaxQuantum()));
+    }
 
+    public jobscheduler(SchedulerOptions options, QuantumController quantumController) {
+        this.options = options;
+        this.quantumController = quantumController;
+        arena = (options.getArenaSlabSize() > 0) ? new JobArena(options.getArenaSlabSize()) : null;
+        if (options.isDenseIds()) {
+            denseJobs = new DenseJobStore();
+            denseReleases = new JobIndex<>();
+        } else {
+            jobQueue = new MinHeap();
+            jobTree = new RedBlackTree(arena, options.getLazyDeleteRatio());
+        }
+        rangePool = (options.getParallelRangeThreshold() > 0) ? ForkJoinPool.commonPool() : null;
+        eventWheel = new TimingWheel();
+        pendingCommands = new ArrayDeque<>();
 
         globalTime = 0;
+        outstandingCommands = 0;
+        runningJob = null;
+    }
+
+    public static void main (String[] args) throws IOException, IllegalArgumentException {
+        mainMillis = System.currentTimeMillis();
+        mainNanos = System.nanoTime();
+        SchedulerOptions options = SchedulerOptions.parse(args);
+        if (options.getServerAddress() != null) {
+            CommandServer server = CommandServer.open(options.getServerAddress(), options);
+            System.out.println("Listening on " + server.getLocalAddress());
+            server.serve();
+            return;
+        }
+        new jobscheduler(options).run(options.getInputFile());
+    }
+    public void run(String inputFile) throws IOException, IllegalArgumentException {
+
+        if (inputFile == null) throw new IllegalArgumentException ("Input file needed");
+
         jobInfo = new StringBuilder();
+        listener = (command, time, output) -> jobInfo.append(output);
+
+        try (BufferedReader br = new BufferedReader(new FileReader(new File(inputFile)))) {
+            scheduleCommands(br);
+            runCommands();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        BufferedWriter bw =  new BufferedWriter (new FileWriter (new File ("output_file.txt")));
+
+        bw.write (jobInfo.toString());
+        bw.close();
+        if (options.isReportStartup()) reportStartup();
+        if (options.isReportQuantum()) System.err.println(quantumController);
+        System.exit(0);
+    }
+
+    /**
+     * Prints how long the JVM took to reach main, how long main took to reach the first command
+     * and the whole run. The management classes are only loaded here, after the measurement.
+     */
+    private void reportStartup() {
+        long now = System.nanoTime();
+        long jvmMillis = mainMillis - ManagementFactory.getRuntimeMXBean().getStartTime();
+        long firstMillis = (firstCommandNanos != 0) ? (firstCommandNanos - mainNanos) / 1_000_000 : -1;
+
+        System.err.println("Startup: JVM to main " + jvmMillis + " ms, main to first command " + firstMillis
+                + " ms, main to exit " + (now - mainNanos) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Schedules the command lines of br as runCommands executes them, so br must stay open until
+     * runCommands returns. Up to INPUT_LOOKAHEAD commands are read ahead and the wheel fires them in
+     * arrival time order, so lines may be out of order by fewer lines than that.
+     */
+    public void scheduleCommands(BufferedReader br) {
+        input = br;
+    }
+
+    /**
+     * Schedules input lines until INPUT_LOOKAHEAD commands are outstanding
+     */
+    private void readInput() {
+        try {
+            while (input != null && outstandingCommands < INPUT_LOOKAHEAD) {
+                String s = input.readLine();
+                if (s == null) {
+                    input = null;
+                } else if (!s.trim().isEmpty()) {
+                    scheduleCommand(Command.parse(s));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public QuantumController getQuantumController() {
+        return quantumController;
+    }
+
+    public void setCommandListener(CommandListener listener) {
+        this.listener = listener;
+    }
+
+    public void setQuantumListener(QuantumListener quantumListener) {
+        this.quantumListener = quantumListener;
+    }
+
+    /**
+     * Registers a command to be executed at its arrival time
+     */
+    public void scheduleCommand(Command command) {
+        outstandingCommands++;
+        eventWheel.schedule(newEvent(EventType.COMMAND_ARRIVAL, command.getArrivalTime(), command, null, 0));
+    }
+
+    /**
+     * Consumes the event wheel tick by tick until every scheduled command and input line has been executed
+     */
+    public void runCommands() {
+        readInput();
+        while (outstandingCommands > 0 && !eventWheel.isEmpty()) {
+            globalTime = (int) eventWheel.advance();
+            readInput();
+
+            SchedulerEvent event;
+            while ((event = eventWheel.poll()) != null) {
+                switch (event.getType()) {
+                    case COMMAND_ARRIVAL:
+                        pendingCommands.add(event.getCommand());
+                        quantumController.commandArrived(event.getCommand().getArrivalTime());
+                        break;
+                    case QUANTUM_EXPIRED:
+                        if (denseJobs != null) {
+                            expireDenseQuantum(event.getSlice());
+                        } else {
+                            expireQuantum(event.getJob(), event.getSlice());
+                        }
+                        break;
+                    case JOB_RELEASE: {
+                        if (denseJobs != null) {
+                            releaseDenseJob(event);
+                            break;
+                        }
+                        Job job = event.getJob();
+                        job.setDelayed(false);
+                        if (job.isCancelled()) {
+                            recycleJob(job);
+                        } else if (!job.isSuspended()) {
+                            jobQueue.insertJob(job);
+                        }
+                        break;
+                    }
+                }
+                recycleEvent(event);
+            }
+
+            dispatch();
+        }
+    }
+
+    /**
+     * Once no quantum is running, executes the next pending command followed by the next quantum.
+     * Commands never interrupt a running quantum.
+     */
+    private void dispatch() {
+        while (runningJob == null && !denseRunning) {
+            Command command = pendingCommands.poll();
+            if (command != null) {
+                if (firstCommandNanos == 0) firstCommandNanos = System.nanoTime();
+                boolean executed = false;
+                try {
+                    executeCommand(command);
+                    executed = true;
+                } catch (RuntimeException e) {
+                    if (listener == null) throw e;
+                    listener.commandFailed(command, globalTime, e);
+                }
+                if (executed && listener != null) listener.commandExecuted(command, globalTime, commandOutput);
+                commandOutput.setLength(0);
+            }
+
+            if (!startQuantum() && command == null) return;
+        }
+    }
+
+    /**
+     * Runs the scheduler up to time, or to the end of the quantum running at that time
+     */
+    public void advanceTo(int time) {
+        scheduleCommand(new Command(time, "Sync", 0));
+        runCommands();
+    }
+
+    /**
+     * returns the number of jobs in the scheduler
+     */
+    public int getJobCount() {
+        return (denseJobs != null) ? denseJobs.size() : jobTree.size();
+    }
 
-        BufferedReader br = new BufferedReader(new FileReader(new File(args[0])));
+    /**
+     * returns the number of jobs with jobIDs between jobId1 and jobId2
+     */
+    public int countJobsInRange(int jobId1, int jobId2) {
+        return (denseJobs != null) ? denseJobs.countInRange(jobId1, jobId2) : jobTree.countInRange(jobId1, jobId2);
+    }
+
+    /**
+     * Returns the jobID of the rank-th job, counted from 0, between jobId1 and jobId2
+     */
+    public int getJobIdInRange(int jobId1, int jobId2, int rank) {
+        if (rank < 0 || rank >= countJobsInRange(jobId1, jobId2)) {
+            throw new IllegalArgumentException("No job at rank " + rank + " between " + jobId1 + " and " + jobId2);
+        }
+        if (denseJobs != null) return denseJobs.getJobIdAtRank(jobId1, rank);
+        return jobTree.getJobAtRank(jobId1, rank).getKey();
+    }
 
-        Pattern pattern = Pattern.compile("([0-9]+)(:(\\s{1}))(([a-zA-Z]+)(\\((([0-9]+)(,)?([0-9]+)?)\\)))");
-        Matcher matcher;
+    /**
+     * returns the jobIDs between jobId1 and jobId2 in increasing order
+     */
+    public int[] getJobIdsInRange(int jobId1, int jobId2) {
+        if (denseJobs != null) return denseJobs.getJobIdsInRange(jobId1, jobId2);
 
-        String s;
+        List<RedBlackNode> nodes = jobTree.getJobsInRange(jobId1, jobId2);
+        int[] ids = new int[nodes.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = nodes.get(i).getKey();
+        return ids;
+    }
+
+    /**
+     * Removes the jobs between jobId1 and jobId2 and appends one line per job for importJobs:
+     * "jobID globalTime executedTime totalTime suspended releaseTime", releaseTime is -1 for released jobs.
+     * A quantum in flight for one of them is not charged. Returns the number of jobs exported. Dense
+     * jobs do not keep their arrival time, they are exported with the current globalTime.
+     */
+    public int exportJobs(int jobId1, int jobId2, StringBuilder out) {
+        int[] ids = getJobIdsInRange(jobId1, jobId2);
+        for (int jobId : ids) {
+            if (denseJobs != null) {
+                SchedulerEvent release = denseReleases.get(jobId);
+                out.append(jobId).append(' ').append(globalTime).append(' ').append(denseJobs.getExecutedTime(jobId))
+                        .append(' ').append(denseJobs.getTotalTime(jobId)).append(' ').append(denseJobs.isSuspended(jobId) ? 1 : 0)
+                        .append(' ').append((release != null) ? release.getTime() : -1).append('\n');
+                retireDenseJob(jobId);
+                continue;
+            }
 
+            Job job = jobTree.search(jobId).getJob();
+            out.append(jobId).append(' ').append(job.getGlobalTime()).append(' ').append(job.getExecutedTime())
+                    .append(' ').append(job.getTotalTime()).append(' ').append(job.isSuspended() ? 1 : 0)
+                    .append(' ').append(job.isDelayed() ? job.getReleaseTime() : -1).append('\n');
+            retireJob(job);
+        }
+        return ids.length;
+    }
 
-        while ((s = br.readLine())!= null) {
+    /**
+     * Adds the jobs written by exportJobs of another scheduler and starts a quantum if none is running
+     */
+    public void importJobs(BufferedReader br) throws IOException {
+        String line;
+        while ((line = br.readLine()) != null) {
+            if (line.isEmpty()) continue;
+            String[] fields = line.split(" ");
+            int jobId = Integer.parseInt(fields[0]);
+            int arrival = Integer.parseInt(fields[1]);
+            int total = Integer.parseInt(fields[3]);
+            int release = Integer.parseInt(fields[5]);
 
-            //System.out.println(s);
-            matcher = pattern.matcher(s);
-            matcher.find();
+            if (denseJobs != null) {
+                if (!denseJobs.insert(jobId, Long.parseLong(fields[2]), total)) throw new IllegalStateException("Job " + jobId + " already exists");
+                denseJobs.setSuspended(jobId, fields[4].equals("1"));
+                if (release > globalTime) {
+                    delayDenseJob(jobId, release);
+                } else if (!denseJobs.isSuspended(jobId)) {
+                    denseJobs.enqueue(jobId);
+                }
+                continue;
+            }
 
-            int jobArrivalTime = Integer.parseInt(matcher.group(1));
+            Job job = (arena != null) ? arena.allocateJob(arrival, jobId, total) : new Job(arrival, jobId, total);
+            job.incrementExecutedTime(Long.parseLong(fields[2]));
+            job.setSuspended(fields[4].equals("1"));
+            if (!jobTree.insertJob(job)) throw new IllegalStateException("Job " + jobId + " already exists");
 
-            while (globalTime < jobArrivalTime) {
-                if (jobQueue.isEmpty()) {
-                        globalTime = jobArrivalTime;
+            if (release > globalTime) {
+                job.setDelayed(true);
+                job.setReleaseTime(release);
+                eventWheel.schedule(newEvent(EventType.JOB_RELEASE, release, null, job, 0));
+            } else if (!job.isSuspended()) {
+                jobQueue.insertJob(job);
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * Appends the whole state of the scheduler between two runs, for restoreSnapshot:
+     *
+     * "T globalTime"
+     * "J jobID arrival executedTime totalTime suspended"   every job in jobID order
+     * "H jobID"                                            the run queue in heap order
+     * "R jobID time slice retired"                         the running quantum, retired once its job left
+     * "D jobID releaseTime"                                a delayed job
+     *
+     * R and D lines are in the order their events fire, so the restored scheduler makes the same
+     * choices. No command may be outstanding. The history of the quantum controller is not included.
+     */
+    public void writeSnapshot(StringBuilder out) {
+        if (outstandingCommands > 0) throw new IllegalStateException("Commands are outstanding");
+
+        out.append("T ").append(globalTime).append('\n');
+        for (int[] ids : new int[][] {getJobIdsInRange(Integer.MIN_VALUE, -1), getJobIdsInRange(0, Integer.MAX_VALUE)}) {
+            for (int jobId : ids) {
+                out.append("J ").append(jobId).append(' ');
+                if (denseJobs != null) {
+                    out.append(globalTime).append(' ').append(denseJobs.getExecutedTime(jobId)).append(' ')
+                            .append(denseJobs.getTotalTime(jobId)).append(' ').append(denseJobs.isSuspended(jobId) ? 1 : 0);
                 } else {
-                    executeJob(jobQueue.removeJob());
+                    Job job = jobTree.search(jobId).getJob();
+                    out.append(job.getGlobalTime()).append(' ').append(job.getExecutedTime()).append(' ')
+                            .append(job.getTotalTime()).append(' ').append(job.isSuspended() ? 1 : 0);
                 }
+                out.append('\n');
             }
+        }
 
-            switch (matcher.group (5)) {
-                case "Insert" : {
-                    Job job = new Job (Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(8)), Integer.parseInt(matcher.group(10)));
-                    jobQueue.insertJob(job);
-                    jobTree.insertJob(job);
+        int queued = (denseJobs != null) ? denseJobs.queueSize() : jobQueue.getSize();
+        for (int i = 1; i <= queued; i++) {
+            out.append("H ").append((denseJobs != null) ? denseJobs.getQueuedJobId(i) : jobQueue.getJob(i).getJobID()).append('\n');
+        }
+
+        for (SchedulerEvent event : eventWheel.getEvents()) {
+            if (event.getType() == EventType.QUANTUM_EXPIRED) {
+                int jobId = (denseJobs != null) ? runningJobId : event.getJob().getJobID();
+                boolean retired = (denseJobs != null) ? runningRetired : event.getJob().isCancelled();
+                out.append("R ").append(jobId).append(' ').append(event.getTime()).append(' ')
+                        .append(event.getSlice()).append(' ').append(retired ? 1 : 0).append('\n');
+            } else if (event.getType() == EventType.JOB_RELEASE) {
+                boolean pending = (denseJobs != null) ? denseReleases.get(event.getJobId()) == event : !event.getJob().isCancelled();
+                if (!pending) continue;
+                int jobId = (denseJobs != null) ? event.getJobId() : event.getJob().getJobID();
+                out.append("D ").append(jobId).append(' ').append(event.getTime()).append('\n');
+            }
+        }
+    }
+
+    /**
+     * Restores a snapshot written by writeSnapshot into a scheduler that has not run yet
+     */
+    public void restoreSnapshot(BufferedReader br) throws IOException {
+        if (getJobCount() > 0 || !eventWheel.isEmpty() || runningJob != null || denseRunning) {
+            throw new IllegalStateException("Snapshots are only restored into an empty scheduler");
+        }
+
+        String line;
+        while ((line = br.readLine()) != null) {
+            if (line.isEmpty()) continue;
+            String[] fields = line.split(" ");
+            int jobId = (fields.length > 1) ? Integer.parseInt(fields[1]) : 0;
+
+            switch (fields[0]) {
+                case "T":
+                    globalTime = jobId;
+                    eventWheel = new TimingWheel(globalTime);
+                    break;
+
+                case "J": {
+                    int arrival = Integer.parseInt(fields[2]);
+                    int total = Integer.parseInt(fields[4]);
+                    boolean suspended = fields[5].equals("1");
+                    if (denseJobs != null) {
+                        denseJobs.insert(jobId, Long.parseLong(fields[3]), total);
+                        denseJobs.setSuspended(jobId, suspended);
+                    } else {
+                        Job job = (arena != null) ? arena.allocateJob(arrival, jobId, total) : new Job(arrival, jobId, total);
+                        job.incrementExecutedTime(Long.parseLong(fields[3]));
+                        job.setSuspended(suspended);
+                        jobTree.insertJob(job);
+                    }
+                    break;
+                }
+
+                case "H":
+                    if (denseJobs != null) {
+                        denseJobs.appendToQueue(jobId);
+                    } else {
+                        jobQueue.appendJob(jobTree.search(jobId).getJob());
+                    }
+                    break;
+
+                case "R": {
+                    long time = Long.parseLong(fields[2]);
+                    int slice = Integer.parseInt(fields[3]);
+                    boolean retired = fields[4].equals("1");
+                    if (denseJobs != null) {
+                        runningJobId = jobId;
+                        denseRunning = true;
+                        runningRetired = retired;
+                        eventWheel.schedule(newEvent(EventType.QUANTUM_EXPIRED, time, null, null, slice));
+                    } else {
+                        Job job = retired ? new Job(0, jobId, 0) : jobTree.search(jobId).getJob();
+                        job.setCancelled(retired);
+                        runningJob = job;
+                        eventWheel.schedule(newEvent(EventType.QUANTUM_EXPIRED, time, null, job, slice));
+                    }
                     break;
                 }
 
-                case "NextJob" : {
-                    RedBlackNode nj = jobTree.getNextJob(Integer.parseInt(matcher.group(8)));
-                    if (nj != null && nj.getJob() != null)
-                        jobInfo.append(nj.getJob().toString() + "\n");
-                    else
-                        jobInfo.append("(0,0,0)" + "\n");
+                case "D": {
+                    int release = Integer.parseInt(fields[2]);
+                    if (denseJobs != null) {
+                        delayDenseJob(jobId, release);
+                    } else {
+                        Job job = jobTree.search(jobId).getJob();
+                        job.setDelayed(true);
+                        job.setReleaseTime(release);
+                        eventWheel.schedule(newEvent(EventType.JOB_RELEASE, release, null, job, 0));
+                    }
                     break;
                 }
 
-                case "PreviousJob" : {
-                   RedBlackNode pj = jobTree.getPreviousJob(Integer.parseInt(matcher.group(8)));
-                   if (pj != null && pj.getJob() != null)
-                       jobInfo.append(pj.getJob().toString() + "\n");
-                   else
-                       jobInfo.append("(0,0,0)" + "\n");
+                default:
+                    throw new IllegalArgumentException("Malformed snapshot line: " + line);
+            }
+        }
+    }
+
+    private void executeCommand(Command command) {
+        outstandingCommands--;
+
+        switch (command.getName()) {
+            /**
+             * Only advances the clock to its arrival time, see advanceTo
+             */
+            case "Sync" :
+                break;
+
+            case "Insert" : {
+                if (denseJobs != null) {
+                    insertDenseJob(command);
+                    break;
+                }
+
+                Job job = (arena != null)
+                        ? arena.allocateJob(command.getArrivalTime(), command.getArg(0), command.getArg(1))
+                        : new Job (command.getArrivalTime(), command.getArg(0), command.getArg(1));
+
+                if (!jobTree.insertJob(job)) {
+                    if (options.getDuplicatePolicy() == DuplicatePolicy.REJECT) {
+                        if (arena != null) arena.releaseJob(job);
+                        commandOutput.append("ERR duplicate jobID ").append(command.getArg(0)).append("\n");
+                        break;
+                    }
+
+                    /**
+                     * The new job takes over the jobID, the old one leaves the run queue
+                     */
+                    Job previous = jobTree.replaceJob(job);
+                    previous.setCancelled(true);
+                    jobQueue.removeJob(previous);
+                    recycleJob(previous);
+                }
+
+                /**
+                 * An optional third argument delays the job's start by that many time units
+                 */
+                if (command.getArgCount() > 2 && command.getArg(2) > 0) {
+                    job.setDelayed(true);
+                    job.setReleaseTime(globalTime + command.getArg(2));
+                    eventWheel.schedule(newEvent(EventType.JOB_RELEASE, job.getReleaseTime(), null, job, 0));
+                } else {
+                    jobQueue.insertJob(job);
+                }
+                break;
+            }
+
+            case "Cancel" : {
+                if (denseJobs != null) {
+                    if (denseJobs.contains(command.getArg(0))) retireDenseJob(command.getArg(0));
                     break;
                 }
+                RedBlackNode node = jobTree.search(command.getArg(0));
+                if (node != null) retireJob(node.getJob());
+                break;
+            }
 
-                case "PrintJob" : {
-                    int p1 = Integer.parseInt(matcher.group(8));
-                    int p2 = p1;
-                    if (matcher.group(10) != null) {
-                        p2 = Integer.parseInt(matcher.group(10));
+            case "UpdateTotalTime" : {
+                if (denseJobs != null) {
+                    updateDenseTotalTime(command.getArg(0), command.getArg(1));
+                    break;
+                }
+                RedBlackNode node = jobTree.search(command.getArg(0));
+                if (node != null) {
+                    Job job = node.getJob();
+                    job.setTotalTime(command.getArg(1));
+                    if (job != runningJob && job.isFinished()) {
+                        retireJob(job);
+                    } else {
+                        jobTree.jobUpdated(job);
                     }
-                    List<RedBlackNode> res = jobTree.getJobsInRange(p1, p2);
-                    for (int i = 0; i < res.size(); i++) {
-                        if (i > 0) jobInfo.append(",");
-                        RedBlackNode node = res.get(i);
-                        jobInfo.append(node.getJob().toString());
+                }
+                break;
+            }
+
+            case "Suspend" : {
+                if (denseJobs != null) {
+                    if (denseJobs.contains(command.getArg(0))) {
+                        denseJobs.dequeue(command.getArg(0));
+                        denseJobs.setSuspended(command.getArg(0), true);
                     }
-		    if (res.isEmpty()) jobInfo.append("(0,0,0)");
-                    jobInfo.append("\n");
                     break;
                 }
+                RedBlackNode node = jobTree.search(command.getArg(0));
+                if (node != null) {
+                    node.getJob().setSuspended(true);
+                    jobQueue.removeJob(node.getJob());
+                }
+                break;
             }
 
-            try {
-                Job job = jobQueue.removeJob();
-                if (job != null) executeJob(job);
-            } catch (NoSuchElementException e) {
-                System.out.println("No jobs in queue");
+            case "Resume" : {
+                if (denseJobs != null) {
+                    resumeDenseJob(command.getArg(0));
+                    break;
+                }
+                RedBlackNode node = jobTree.search(command.getArg(0));
+                if (node != null && node.getJob().isSuspended()) {
+                    Job job = node.getJob();
+                    job.setSuspended(false);
+                    if (!job.isDelayed() && job != runningJob && !jobQueue.contains(job)) jobQueue.insertJob(job);
+                }
+                break;
             }
+
+            default :
+                if (!executeQuery(command, commandOutput)) throw new IllegalArgumentException("Unknown command: " + command);
+                break;
         }
-        br.close();
+    }
 
+    /**
+     * Insert for dense jobs, with the same duplicate and delay handling as for Job objects
+     */
+    private void insertDenseJob(Command command) {
+        int jobId = command.getArg(0);
+        if (!denseJobs.insert(jobId, 0, command.getArg(1))) {
+            if (options.getDuplicatePolicy() == DuplicatePolicy.REJECT) {
+                commandOutput.append("ERR duplicate jobID ").append(jobId).append("\n");
+                return;
+            }
+            retireDenseJob(jobId);
+            denseJobs.insert(jobId, 0, command.getArg(1));
+        }
 
-        BufferedWriter bw =  new BufferedWriter (new FileWriter (new File ("output_file.txt")));
+        if (command.getArgCount() > 2 && command.getArg(2) > 0) {
+            delayDenseJob(jobId, globalTime + command.getArg(2));
+        } else {
+            denseJobs.enqueue(jobId);
+        }
+    }
 
-        bw.write (jobInfo.toString());
-        bw.close();
-        System.exit(0);
+    private void updateDenseTotalTime(int jobId, int totalTime) {
+        if (!denseJobs.contains(jobId)) return;
+        long executedTime = denseJobs.getExecutedTime(jobId);
+        if (!isRunningDense(jobId) && executedTime >= totalTime) {
+            retireDenseJob(jobId);
+        } else {
+            denseJobs.update(jobId, executedTime, totalTime);
+        }
+    }
+
+    private void resumeDenseJob(int jobId) {
+        if (!denseJobs.contains(jobId) || !denseJobs.isSuspended(jobId)) return;
+        denseJobs.setSuspended(jobId, false);
+        if (denseReleases.get(jobId) == null && !isRunningDense(jobId)) denseJobs.enqueue(jobId);
+    }
+
+    /**
+     * Answers a batch of queries like executeQuery, with all NextJob and all PreviousJob probes
+     * resolved together. Returns the output of every command without its line break, null for
+     * commands that are not queries.
+     */
+    public String[] executeQueries(List<Command> commands) {
+        String[] responses = new String[commands.size()];
+        int[] next = new int[commands.size()], previous = new int[commands.size()];
+        int nextCount = 0, previousCount = 0;
+        StringBuilder out = new StringBuilder();
+
+        for (int i = 0; i < responses.length; i++) {
+            Command command = commands.get(i);
+            if (jobTree != null && command.getName().equals("NextJob")) {
+                next[nextCount++] = i;
+            } else if (jobTree != null && command.getName().equals("PreviousJob")) {
+                previous[previousCount++] = i;
+            } else {
+                out.setLength(0);
+                if (executeQuery(command, out)) responses[i] = out.substring(0, out.length() - 1);
+            }
+        }
+
+        if (nextCount > 0) resolveProbes(commands, next, nextCount, true, responses);
+        if (previousCount > 0) resolveProbes(commands, previous, previousCount, false, responses);
+        return responses;
+    }
+
+    private void resolveProbes(List<Command> commands, int[] positions, int count, boolean next, String[] responses) {
+        int[] jobIds = new int[count];
+        for (int i = 0; i < count; i++) jobIds[i] = commands.get(positions[i]).getArg(0);
+
+        RedBlackNode[] nodes = next ? jobTree.getNextJobs(jobIds) : jobTree.getPreviousJobs(jobIds);
+        for (int i = 0; i < count; i++) {
+            responses[positions[i]] = (nodes[i] != null) ? nodes[i].getJob().toString() : "(0,0,0)";
+        }
+    }
+
+    /**
+     * Answers NextJob, PreviousJob, PrintJob, SumRemaining and MaxExecuted from the current state
+     * without advancing the clock. Returns false for any other command.
+     */
+    public boolean executeQuery(Command command, StringBuilder out) {
+        switch (command.getName()) {
+            case "SumRemaining" : {
+                int p2 = (command.getArgCount() > 1) ? command.getArg(1) : command.getArg(0);
+                long sum = (denseJobs != null)
+                        ? denseJobs.getSumRemainingInRange(command.getArg(0), p2)
+                        : jobTree.getSumRemainingInRange(command.getArg(0), p2);
+                out.append(sum).append("\n");
+                break;
+            }
+
+            case "MaxExecuted" : {
+                int p2 = (command.getArgCount() > 1) ? command.getArg(1) : command.getArg(0);
+                long max = (denseJobs != null)
+                        ? denseJobs.getMaxExecutedInRange(command.getArg(0), p2)
+                        : jobTree.getMaxExecutedInRange(command.getArg(0), p2);
+                out.append(max == Long.MIN_VALUE ? 0 : max).append("\n");
+                break;
+            }
+
+            case "NextJob" : {
+                if (denseJobs != null) {
+                    if (!denseJobs.appendNextJob(command.getArg(0), out)) out.append("(0,0,0)");
+                    out.append("\n");
+                    break;
+                }
+                RedBlackNode nj = jobTree.getNextJob(command.getArg(0));
+                if (nj != null && nj.getJob() != null)
+                    out.append(nj.getJob().toString() + "\n");
+                else
+                    out.append("(0,0,0)" + "\n");
+                break;
+            }
+
+            case "PreviousJob" : {
+               if (denseJobs != null) {
+                   if (!denseJobs.appendPreviousJob(command.getArg(0), out)) out.append("(0,0,0)");
+                   out.append("\n");
+                   break;
+               }
+               RedBlackNode pj = jobTree.getPreviousJob(command.getArg(0));
+               if (pj != null && pj.getJob() != null)
+                   out.append(pj.getJob().toString() + "\n");
+               else
+                   out.append("(0,0,0)" + "\n");
+                break;
+            }
+
+            case "PrintJob" : {
+                int p1 = command.getArg(0);
+                int p2 = p1;
+                if (command.getArgCount() > 1) {
+                    p2 = command.getArg(1);
+                }
+                int count = (denseJobs != null)
+                        ? denseJobs.appendJobsInRange(p1, p2, out)
+                        : jobTree.appendJobsInRange(p1, p2, out, rangePool, options.getParallelRangeThreshold());
+		    if (count == 0) out.append("(0,0,0)");
+                out.append("\n");
+                break;
+            }
+
+            default :
+                return false;
+        }
+        return true;
     }
 }
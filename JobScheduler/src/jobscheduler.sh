@@ -0,0 +1,13 @@
+#!/bin/sh
+# Starts jobscheduler from the jar built by "make jar", with the class data sharing archive of
+# "make cds" when it exists. Serial GC and C1 only keep short runs short, JAVA_OPTS can override them.
+DIR=$(cd "$(dirname "$0")" && pwd)
+JAR="$DIR/jobscheduler.jar"
+ARCHIVE="$DIR/jobscheduler.jsa"
+
+OPTS="-XX:+UseSerialGC -XX:TieredStopAtLevel=1"
+if [ -f "$ARCHIVE" ]; then
+    OPTS="$OPTS -XX:SharedArchiveFile=$ARCHIVE"
+fi
+
+exec java $OPTS $JAVA_OPTS -cp "$JAR" jobscheduler "$@"